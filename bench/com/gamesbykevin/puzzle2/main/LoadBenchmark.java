@@ -0,0 +1,51 @@
+package com.gamesbykevin.puzzle2.main;
+
+import com.gamesbykevin.puzzle2.shared.Shared;
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the time to load every resource the same way the game does
+ * before the title screen is shown, one update every frame until loading
+ * is complete. Run it in a new JVM each time so nothing is loaded yet.
+ *
+ * usage: LoadBenchmark [parallel|sequential]
+ * @author GOD
+ */
+public class LoadBenchmark
+{
+    //the time between each update, the same as the game
+    private static final long NANO_SECONDS_PER_UPDATE = (long)(1000000000.0 / Shared.DEFAULT_UPS);
+    
+    public static void main(String[] args) throws Exception
+    {
+        ResourceManager.PARALLEL_LOADING = !(args.length > 0 && args[0].equalsIgnoreCase("sequential"));
+        
+        //the desktop version finds the resources with the class of the window
+        final Class<?> source = Class.forName("StartDesktop");
+        
+        final long start = System.nanoTime();
+        
+        ResourceManager resources = new ResourceManager(new SplitRandom(1));
+        
+        int updates = 0;
+        
+        long next = System.nanoTime();
+        
+        while (resources.isLoading())
+        {
+            resources.update(source);
+            updates++;
+            
+            next += NANO_SECONDS_PER_UPDATE;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+        
+        final long time = System.nanoTime() - start;
+        
+        System.out.println((ResourceManager.PARALLEL_LOADING ? "parallel" : "sequential") + ": " + (time / 1000000.0) + "ms, " + updates + " updates");
+        
+        resources.dispose();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.awt.image.FilteredImageSource;
+import java.awt.image.MemoryImageSource;
+import java.awt.image.PixelGrabber;
+
+/**
+ * Compares the time to cut every piece of a puzzle with the
+ * original CustomImageFilter and the rasterized CutMask
+ * @author GOD
+ */
+public class CutterBenchmark 
+{
+    //number of times to cut the puzzle before we start timing
+    private static final int WARMUP = 3;
+    
+    //number of times to cut the puzzle while timing
+    private static final int ROUNDS = 5;
+    
+    //the same seed cuts the same tabs every run
+    private static final long SEED = 1;
+    
+    public static void main(String[] args) throws Exception
+    {
+        final int[] pieceCounts = {16, 100, 225};
+        
+        for (int numPieces : pieceCounts)
+        {
+            for (Cutter.PuzzleCut cut : Cutter.PuzzleCut.values())
+            {
+                final int dim = (int)Math.sqrt(numPieces);
+                
+                final Image image = createImage(450, 450);
+                
+                CutSheet sheet = new CutSheet(image, CutSheet.getSize(image, new Rectangle(0, 0, 1000, 600)), dim, dim, cut, new CutMaskCache(), new SplitRandom(SEED));
+                
+                for (int i=0; i < WARMUP; i++)
+                {
+                    cutFilter(sheet);
+                    cutMask(sheet);
+                }
+                
+                long filter = 0, mask = 0;
+                
+                for (int i=0; i < ROUNDS; i++)
+                {
+                    filter += cutFilter(sheet);
+                    mask   += cutMask(sheet);
+                }
+                
+                System.out.println(numPieces + " pieces, " + cut + ": filter " + (filter / ROUNDS / 1000000.0) + "ms, mask " + (mask / ROUNDS / 1000000.0) + "ms");
+                System.out.println("    cut masks " + sheet.getCutMaskCache().getSize() + ", hits " + sheet.getCutMaskCache().getHits() + ", misses " + sheet.getCutMaskCache().getMisses());
+                System.out.println("    memory filter " + (getRetainedFilter(sheet) / 1024) + "kb, mask " + (getRetainedMask(sheet) / 1024) + "kb");
+            }
+        }
+    }
+    
+    /**
+     * Heap retained by the images of every puzzle piece cut with the filter
+     * @return long bytes
+     */
+    private static long getRetainedFilter(final CutSheet sheet) throws Exception
+    {
+        final long before = getUsedMemory();
+        
+        Image[] images = new Image[sheet.getCols() * sheet.getRows()];
+        
+        for (int col=0; col < sheet.getCols(); col++)
+        {
+            for (int row=0; row < sheet.getRows(); row++)
+            {
+                Rectangle r = sheet.getPieceArea(col, row);
+                PixelGrabber pg = new PixelGrabber(sheet.getImage(), r.x, r.y, r.width, r.height, true);
+                pg.grabPixels();
+                int pixels[] = (int[])pg.getPixels();
+
+                Image img = Toolkit.getDefaultToolkit().createImage(new MemoryImageSource(r.width, r.height, pixels, 0, r.width));
+                FilteredImageSource fis = new FilteredImageSource(img.getSource(), new CustomImageFilter(Cutter.getCutArea(sheet, col, row)));
+
+                images[sheet.getIndex(col, row)] = Toolkit.getDefaultToolkit().createImage(fis);
+                produce(images[sheet.getIndex(col, row)], r);
+            }
+        }
+        
+        final long after = getUsedMemory();
+        
+        //make sure the images are still reachable when memory is measured
+        return (images.length > 0) ? after - before : 0;
+    }
+    
+    /**
+     * Heap retained by the images of every puzzle piece cut with the mask
+     * @return long bytes
+     */
+    private static long getRetainedMask(final CutSheet sheet) throws Exception
+    {
+        final long before = getUsedMemory();
+        
+        Image[] images = new Image[sheet.getCols() * sheet.getRows()];
+        
+        for (int col=0; col < sheet.getCols(); col++)
+        {
+            for (int row=0; row < sheet.getRows(); row++)
+            {
+                images[sheet.getIndex(col, row)] = Cutter.createPiece(sheet, col, row);
+                produce(images[sheet.getIndex(col, row)], sheet.getPieceArea(col, row));
+            }
+        }
+        
+        final long after = getUsedMemory();
+        
+        //make sure the images are still reachable when memory is measured
+        return (images.length > 0) ? after - before : 0;
+    }
+    
+    private static long getUsedMemory() throws Exception
+    {
+        for (int i=0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+    
+    /**
+     * Cut every piece with the RGBImageFilter and Area.contains per pixel
+     * @return long nanoseconds
+     */
+    private static long cutFilter(final CutSheet sheet) throws Exception
+    {
+        final long start = System.nanoTime();
+        
+        for (int col=0; col < sheet.getCols(); col++)
+        {
+            for (int row=0; row < sheet.getRows(); row++)
+            {
+                Rectangle r = sheet.getPieceArea(col, row);
+                PixelGrabber pg = new PixelGrabber(sheet.getImage(), r.x, r.y, r.width, r.height, true);
+                pg.grabPixels();
+                int pixels[] = (int[])pg.getPixels();
+
+                Image img = Toolkit.getDefaultToolkit().createImage(new MemoryImageSource(r.width, r.height, pixels, 0, r.width));
+                FilteredImageSource fis = new FilteredImageSource(img.getSource(), new CustomImageFilter(Cutter.getCutArea(sheet, col, row)));
+
+                produce(Toolkit.getDefaultToolkit().createImage(fis), r);
+            }
+        }
+        
+        return System.nanoTime() - start;
+    }
+    
+    /**
+     * Cut every piece with the CutMask
+     * @return long nanoseconds
+     */
+    private static long cutMask(final CutSheet sheet) throws Exception
+    {
+        final long start = System.nanoTime();
+        
+        for (int col=0; col < sheet.getCols(); col++)
+        {
+            for (int row=0; row < sheet.getRows(); row++)
+            {
+                produce(Cutter.createPiece(sheet, col, row), sheet.getPieceArea(col, row));
+            }
+        }
+        
+        return System.nanoTime() - start;
+    }
+    
+    /**
+     * Toolkit images are produced lazily so draw the image to make sure the pixels exist
+     */
+    private static void produce(final Image image, final Rectangle r)
+    {
+        BufferedImage tmp = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tmp.createGraphics();
+        
+        while (!g.drawImage(image, 0, 0, null))
+        {
+            Thread.yield();
+        }
+        
+        g.dispose();
+    }
+    
+    /**
+     * Create an image the size of a puzzle that is not a solid color
+     */
+    protected static BufferedImage createImage(final int width, final int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+}
\ No newline at end of file
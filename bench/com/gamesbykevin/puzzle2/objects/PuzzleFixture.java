@@ -0,0 +1,62 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.framework.input.Mouse;
+
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+
+/**
+ * The scrambled puzzle the benchmarks and tests are run on,
+ * the same seed creates the same puzzle every run
+ * @author GOD
+ */
+public final class PuzzleFixture
+{
+    //the same seed creates the same puzzle every run
+    public static final long SEED = 1;
+    
+    //the time deducted each update, the game time doesn't matter so scrambling finishes in a few updates
+    public static final long TIME_DEDUCTION = 250000000L;
+    
+    public static final Rectangle SCREEN = new Rectangle(0, 0, 1000, 600);
+    
+    private PuzzleFixture()
+    {
+    }
+    
+    /**
+     * Create the sheet and cut every piece
+     * @param pieces The number of pieces, the square of the number of rows
+     * @return CutSheet
+     */
+    public static CutSheet createSheet(final int pieces)
+    {
+        final int dim = (int)Math.sqrt(pieces);
+        
+        final Image source = CutterBenchmark.createImage(450, 450);
+        
+        return new CutSheet(source, CutSheet.getSize(source, SCREEN), dim, dim, Cutter.PuzzleCut.Traditional, new CutMaskCache(), new SplitRandom(SEED));
+    }
+    
+    /**
+     * Create a puzzle and update it until the pieces have been cut and scrambled
+     * @param sheet
+     * @return Puzzle
+     * @throws Exception 
+     */
+    public static Puzzle createPuzzle(final CutSheet sheet) throws Exception
+    {
+        final Mouse mouse = new Mouse();
+        
+        Puzzle puzzle = new Puzzle(sheet, SCREEN, TIME_DEDUCTION, 0, 0, new SplitRandom(SEED));
+        
+        while (!puzzle.isScramblingComplete())
+        {
+            puzzle.update(mouse);
+        }
+        
+        return puzzle;
+    }
+}
@@ -0,0 +1,55 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The time to cut the image of one puzzle piece for each puzzle size and cut style
+ * @author GOD
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CuttingBenchmark
+{
+    @Param({"16", "100", "225"})
+    public int pieces;
+    
+    @Param({"Traditional", "None"})
+    public Cutter.PuzzleCut cut;
+    
+    private CutSheet sheet;
+    
+    //the piece that will be cut next, every piece is cut in turn
+    private int index = 0;
+    
+    @Setup
+    public void setup()
+    {
+        final int dim = (int)Math.sqrt(pieces);
+        
+        final Image image = CutterBenchmark.createImage(450, 450);
+        
+        sheet = new CutSheet(image, CutSheet.getSize(image, new Rectangle(0, 0, 1000, 600)), dim, dim, cut, new CutMaskCache(), new SplitRandom(PuzzleFixture.SEED));
+    }
+    
+    @Benchmark
+    public BufferedImage createPiece()
+    {
+        final int col = index % sheet.getCols();
+        final int row = (index / sheet.getCols()) % sheet.getRows();
+        
+        index++;
+        
+        return Cutter.createPiece(sheet, col, row);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Connecting puzzle pieces. A piece can only be connected once so a new
+ * puzzle is created before every call, this is not part of the time measured.
+ * @author GOD
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MergeBenchmark
+{
+    @Param({"16", "100", "225"})
+    public int pieces;
+    
+    //the sheet is cut once and shared by every puzzle created
+    private CutSheet sheet;
+    
+    private Puzzle puzzle;
+    
+    //where the selected piece is dropped
+    private int x, y;
+    
+    @Setup(Level.Trial)
+    public void setupSheet() throws Exception
+    {
+        sheet = PuzzleFixture.createSheet(pieces);
+    }
+    
+    @Setup(Level.Invocation)
+    public void setup() throws Exception
+    {
+        puzzle = PuzzleFixture.createPuzzle(sheet);
+        
+        //place every piece where it belongs so they all connect
+        for (Piece piece : puzzle.getPieces())
+        {
+            piece.setLocation(puzzle.getDestinationX(piece), puzzle.getDestinationY(piece));
+        }
+        
+        //the first piece is dropped where it already is
+        puzzle.setSelectedPieceIndex(0);
+        x = puzzle.getPiece().getX();
+        y = puzzle.getPiece().getY();
+    }
+    
+    /**
+     * Drop a piece where it connects to the pieces next to it, only the first piece found is connected
+     */
+    @Benchmark
+    public int checkMatch()
+    {
+        puzzle.checkMatch(x, y);
+        
+        return puzzle.getPieces().size();
+    }
+    
+    /**
+     * Connect every piece of the puzzle
+     */
+    @Benchmark
+    public int mergePieces()
+    {
+        puzzle.mergePieces();
+        
+        return puzzle.getPieces().size();
+    }
+}
\ No newline at end of file
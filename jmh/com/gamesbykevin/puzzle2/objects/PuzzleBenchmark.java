@@ -0,0 +1,123 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Picking, dropping and drawing the pieces of a scrambled puzzle
+ * @author GOD
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PuzzleBenchmark
+{
+    @Param({"16", "100", "225"})
+    public int pieces;
+    
+    private Puzzle puzzle;
+    
+    //the middle of each piece after scrambling
+    private Point[] points;
+    
+    //the next point or piece used
+    private int index = 0;
+    
+    //the image the puzzle is drawn to
+    private BufferedImage image;
+    private Graphics2D g2d;
+    
+    @Setup
+    public void setup() throws Exception
+    {
+        puzzle = PuzzleFixture.createPuzzle(PuzzleFixture.createSheet(pieces));
+        
+        points = new Point[puzzle.getPieces().size()];
+        
+        for (int i=0; i < points.length; i++)
+        {
+            final Piece piece = puzzle.getPieces().get(i);
+            points[i] = new Point(piece.getX() + (piece.getWidth() / 2), piece.getY() + (piece.getHeight() / 2));
+        }
+        
+        image = new BufferedImage(PuzzleFixture.SCREEN.width, PuzzleFixture.SCREEN.height, BufferedImage.TYPE_INT_RGB);
+        g2d = image.createGraphics();
+    }
+    
+    @TearDown
+    public void tearDown()
+    {
+        g2d.dispose();
+    }
+    
+    private Point getNextPoint()
+    {
+        return points[index++ % points.length];
+    }
+    
+    /**
+     * Pick the piece under the mouse
+     */
+    @Benchmark
+    public int pick()
+    {
+        puzzle.setSelectedPiece(getNextPoint());
+        
+        final int selected = puzzle.getSelectedPieceIndex();
+        
+        puzzle.resetSelectedPieceIndex();
+        
+        return selected;
+    }
+    
+    /**
+     * Drop a piece where it doesn't connect to any other piece
+     */
+    @Benchmark
+    public int checkMatchMiss()
+    {
+        puzzle.setSelectedPieceIndex(index++ % puzzle.getPieces().size());
+        
+        final Piece piece = puzzle.getPiece();
+        puzzle.checkMatch(piece.getX(), piece.getY());
+        
+        puzzle.resetSelectedPieceIndex();
+        
+        return puzzle.getPieces().size();
+    }
+    
+    /**
+     * Draw the puzzle after a different piece is picked up so every piece is drawn
+     */
+    @Benchmark
+    public Image drawFull()
+    {
+        puzzle.setSelectedPieceIndex(index++ % puzzle.getPieces().size());
+        puzzle.draw(g2d);
+        
+        return image;
+    }
+    
+    /**
+     * Draw the puzzle while the same piece is dragged around
+     */
+    @Benchmark
+    public Image drawDrag()
+    {
+        if (!puzzle.hasSelectedPiece())
+            puzzle.setSelectedPieceIndex(0);
+        
+        puzzle.getPiece().setNewPosition(getNextPoint());
+        puzzle.draw(g2d);
+        
+        return image;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.framework.input.Mouse;
+
+import java.awt.Image;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Starting a new round, from creating the puzzles until
+ * every piece of every puzzle has been cut and scrambled
+ * @author GOD
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResetBenchmark
+{
+    //the time that passes each update, the same as the game
+    private static final long TIME_DEDUCTION = 16666666L;
+    
+    @Param({"16", "100", "225"})
+    public int pieces;
+    
+    @Param({"1", "12"})
+    public int players;
+    
+    private Puzzles puzzles;
+    
+    private Image image;
+    
+    private final Mouse mouse = new Mouse();
+    
+    @Setup
+    public void setup()
+    {
+        puzzles = new Puzzles(PuzzleFixture.SEED);
+        image = CutterBenchmark.createImage(800, 800);
+    }
+    
+    @Benchmark
+    public Puzzles reset() throws Exception
+    {
+        puzzles.reset(image, PuzzleFixture.SCREEN, TIME_DEDUCTION, mouse, pieces, players, false, 0, 0, Cutter.PuzzleCut.Traditional.ordinal());
+        
+        while (!isEveryScramblingComplete())
+        {
+            puzzles.update();
+        }
+        
+        return puzzles;
+    }
+    
+    private boolean isEveryScramblingComplete()
+    {
+        for (Puzzle puzzle : puzzles.getPuzzles())
+        {
+            if (!puzzle.isScramblingComplete())
+                return false;
+        }
+        
+        return true;
+    }
+}
\ No newline at end of file
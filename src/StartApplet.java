@@ -27,6 +27,7 @@ public class StartApplet extends JApplet
         setCursor(Shared.CURSOR);
             
         int ups = Shared.DEFAULT_UPS;
+        int fps = Shared.DEFAULT_FPS;
         boolean showCounter = true;
 
         try
@@ -34,13 +35,17 @@ public class StartApplet extends JApplet
             //parameters here
             ups         = Integer.parseInt(getParameter("ups"));
             showCounter = Boolean.parseBoolean(getParameter("showCounter"));
+            
+            //the frame limit is optional
+            if (getParameter("fps") != null)
+                fps = Integer.parseInt(getParameter("fps"));
         }
         catch(Exception e)
         {
             e.printStackTrace();
         }
         
-        main = new Main(ups, showCounter);
+        main = new Main(ups, fps, showCounter);
         main.setApplet(this);
     }
     
@@ -0,0 +1,50 @@
+import com.gamesbykevin.puzzle2.ai.ArtificialIntelligence;
+import com.gamesbykevin.puzzle2.main.Simulation;
+
+import java.io.File;
+import javax.imageio.ImageIO;
+
+/**
+ * This file will play cpu only matches without a window as fast as possible
+ * and report how long the puzzles took to complete.
+ * 
+ * usage: StartHeadless [matches] [pieces] [players] [Easy|Medium|Hard|All] [race|attack] [seed] [image]
+ * @author GOD
+ */
+public class StartHeadless
+{
+    public static void main(String[] args)
+    {
+        //we never create a window
+        System.setProperty("java.awt.headless", "true");
+        
+        try
+        {
+            final int matches    = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+            final int numPieces  = (args.length > 1) ? Integer.parseInt(args[1]) : 225;
+            final int numPlayers = (args.length > 2) ? Integer.parseInt(args[2]) : 12;
+            final String difficulty = (args.length > 3) ? args[3] : "All";
+            final int gameTypeIndex = (args.length > 4 && args[4].equalsIgnoreCase("attack")) ? 1 : 0;
+            final long seed = (args.length > 5) ? Long.parseLong(args[5]) : System.nanoTime();
+            
+            System.out.println("seed: " + seed);
+            System.out.println();
+            
+            for (ArtificialIntelligence.Difficulty value : ArtificialIntelligence.Difficulty.values())
+            {
+                if (!difficulty.equalsIgnoreCase("All") && !difficulty.equalsIgnoreCase(value.toString()))
+                    continue;
+                
+                Simulation simulation = new Simulation((args.length > 6) ? ImageIO.read(new File(args[6])) : null, numPieces, numPlayers, value.ordinal(), gameTypeIndex, seed);
+                simulation.run(matches);
+                
+                System.out.println(simulation.getReport());
+                System.out.println();
+            }
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
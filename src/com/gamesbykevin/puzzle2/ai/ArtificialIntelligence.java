@@ -2,14 +2,16 @@ package com.gamesbykevin.puzzle2.ai;
 
 import com.gamesbykevin.puzzle2.objects.Piece;
 import com.gamesbykevin.puzzle2.objects.Puzzle;
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
 import com.gamesbykevin.framework.util.*;
 
-import java.awt.Point;
-
 public class ArtificialIntelligence 
 {
     //where is the correct place for the current piece
-    private Point destination;
+    private int destinationX, destinationY;
+    
+    //random numbers for this cpu only
+    private final SplitRandom random;
     
     public enum Difficulty
     {
@@ -22,10 +24,12 @@ public class ArtificialIntelligence
     public static final long TIME_HARD       = 3250;
     public static final long TIME_DIFFERENCE = 350;
     
-    public ArtificialIntelligence(Puzzle puzzle, Difficulty difficulty)
+    public ArtificialIntelligence(Puzzle puzzle, Difficulty difficulty, SplitRandom random)
     {
+        this.random = random;
+        
         long milliSeconds = 0;
-        long difference = (long)((Math.random() * (TIME_DIFFERENCE * 2)) - TIME_DIFFERENCE);
+        long difference = (long)((random.nextDouble() * (TIME_DIFFERENCE * 2)) - TIME_DIFFERENCE);
         
         switch(difficulty)
         {
@@ -79,12 +83,13 @@ public class ArtificialIntelligence
         {
             while(true)
             {
-                int rand = (int)(Math.random() * puzzle.getPieces().size());
+                int rand = random.nextInt(puzzle.getPieces().size());
                 Piece piece = puzzle.getPieces().get(rand);
-                destination = puzzle.getDestination(piece);
+                destinationX = puzzle.getDestinationX(piece);
+                destinationY = puzzle.getDestinationY(piece);
                 
                 //is this piece not already at the destination
-                if (!piece.getPoint().equals(destination))
+                if (piece.getX() != destinationX || piece.getY() != destinationY)
                 {
                     puzzle.setSelectedPieceIndex(rand);
                     puzzle.getTimerCollection().resetRemaining(Puzzle.TimerKey.CpuMove);
@@ -98,9 +103,8 @@ public class ArtificialIntelligence
         movePiece(piece, puzzle);
         
         //after move now check if reached destination
-        if (piece.getPoint().equals(destination))
+        if (piece.getX() == destinationX && piece.getY() == destinationY)
         {   //destination reached check if pieces intersect to merge
-            destination = null;
             puzzle.resetSelectedPieceIndex();
             puzzle.mergePieces();
         }
@@ -112,18 +116,16 @@ public class ArtificialIntelligence
     
     private void movePiece(final Piece piece, final Puzzle puzzle)
     {
-        Point start = piece.getOriginalLocation();
-        
-        int xDiff = start.x - destination.x;
-        int yDiff = start.y - destination.y;
+        int xDiff = piece.getOriginalX() - destinationX;
+        int yDiff = piece.getOriginalY() - destinationY;
         
-        int x = destination.x;
-        int y = destination.y;
+        int x = destinationX;
+        int y = destinationY;
         
         if (puzzle.getTimerCollection().getTimer(Puzzle.TimerKey.CpuMove).getProgress() < 1)
         {
-            x = start.x - (int)(xDiff * puzzle.getTimerCollection().getTimer(Puzzle.TimerKey.CpuMove).getProgress());
-            y = start.y - (int)(yDiff * puzzle.getTimerCollection().getTimer(Puzzle.TimerKey.CpuMove).getProgress());
+            x = piece.getOriginalX() - (int)(xDiff * puzzle.getTimerCollection().getTimer(Puzzle.TimerKey.CpuMove).getProgress());
+            y = piece.getOriginalY() - (int)(yDiff * puzzle.getTimerCollection().getTimer(Puzzle.TimerKey.CpuMove).getProgress());
         }
         else
         {
@@ -132,6 +134,6 @@ public class ArtificialIntelligence
         }
 
         //dont forget to move any child pieces connected to this one
-        piece.setNewPosition(new Point(x, y));
+        piece.setNewPosition(x, y);
     }
-}
\ No newline at end of file
+}
@@ -5,13 +5,17 @@ import com.gamesbykevin.framework.input.Keyboard;
 
 import com.gamesbykevin.puzzle2.menu.GameMenu;
 import com.gamesbykevin.puzzle2.objects.*;
+import com.gamesbykevin.puzzle2.shared.DirtyRegion;
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
 
 import java.awt.*;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 //TODO here we need to have the resources object and the menu object
 
@@ -32,9 +36,40 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
     //keyboard object that will be recording key input
     private Keyboard keyboard;
     
+    //the key/mouse events received on the event dispatch thread waiting to be applied on the game thread
+    private final ConcurrentLinkedQueue<InputEvent> input = new ConcurrentLinkedQueue<>();
+    
     //all the puzzles are contained here
     private Puzzles puzzles;
     
+    //the cut puzzle pieces saved for the next launch, null if they can't be saved
+    private final CutSheetFileCache cutSheetFiles;
+    
+    //the area the mouse cursor was last drawn
+    private final Rectangle cursor = new Rectangle();
+    
+    //was the entire screen drawn last frame
+    private boolean previousFull = true;
+    
+    //counts the changes to the loading screen and the menu, they are only published and drawn again when this changes
+    private int screenVersion = 0;
+    
+    //the version of the loading screen and the menu last added to the dirty region
+    private int regionVersion = -1;
+    
+    //the snapshot of the loading screen and the menu, returned again until the version changes
+    private Snapshot screenSnapshot;
+    private int snapshotVersion = -1;
+    
+    //what the loading screen and the menu showed the last update
+    private int screenLoaded = -1;
+    private boolean screenFailed = false;
+    private Object screenLayer;
+    private boolean screenFocus = false;
+    
+    //the images and puzzles get random numbers split from this so the same seed plays the same game
+    private final SplitRandom random;
+    
     /**
      * The Engine that contains the game/menu objects
      * 
@@ -42,11 +77,27 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
      * @throws CustomException 
      */
     public Engine(final Main main) 
+    {
+        this(main, new SplitRandom());
+    }
+    
+    /**
+     * @param main Main object that contains important information so we need a reference to it
+     * @param seed The same seed will pick the same images and create the same puzzles
+     */
+    public Engine(final Main main, final long seed)
+    {
+        this(main, new SplitRandom(seed));
+    }
+    
+    private Engine(final Main main, final SplitRandom random)
     {
         this.main = main;
+        this.random = random;
         this.mouse = new Mouse();
         this.keyboard = new Keyboard();
-        this.resources = new ResourceManager();
+        this.resources = new ResourceManager(random.split());
+        this.cutSheetFiles = CutSheetFileCache.createDefault();
     }
     
     @Override
@@ -54,6 +105,11 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
     {
         try
         {
+            if (puzzles != null)
+                puzzles.dispose();
+            
+            puzzles = null;
+            
             resources.dispose();
             resources = null;
             
@@ -75,12 +131,17 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
     @Override
     public void update(Main main)
     {
+        boolean input = false;
+        
         try
         {
-            //if resources are still loading
+            input = processInput();
+            
+            //if resources are still loading, if a resource failed to load there is nothing else to do
             if (resources.isLoading())
             {
-                resources.update(main.getContainerClass());
+                if (!resources.hasFailed())
+                    resources.update(main.getContainerClass());
 
                 //resources are now loaded so create the menu
                 if (!resources.isLoading())
@@ -118,6 +179,117 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
         {
             e.printStackTrace();
         }
+        
+        updateScreenVersion(input);
+    }
+    
+    /**
+     * Count a change to the loading screen or the menu, the screen changes 
+     * when there is input, when more resources are loaded or loading fails, 
+     * and when the menu layer or focus changes
+     * @param input Was there any key or mouse input this update
+     */
+    private void updateScreenVersion(final boolean input)
+    {
+        final int loaded = (resources.isLoading()) ? resources.getLoadedCount() : -1;
+        final boolean failed = resources.hasFailed();
+        final Object layer = (menu != null) ? menu.getKey() : null;
+        final boolean focus = (menu != null && menu.hasFocus());
+        
+        if (input || loaded != screenLoaded || failed != screenFailed || layer != screenLayer || focus != screenFocus)
+        {
+            screenVersion++;
+            
+            screenLoaded = loaded;
+            screenFailed = failed;
+            screenLayer = layer;
+            screenFocus = focus;
+        }
+    }
+    
+    /**
+     * Apply the key/mouse events received since the last update.
+     * The events are received on the event dispatch thread and
+     * are applied here so only the game thread changes the mouse and keyboard.
+     * @return boolean Was there any input, any input may change the menu
+     */
+    private boolean processInput()
+    {
+        boolean result = false;
+        
+        InputEvent e;
+        
+        while ((e = input.poll()) != null)
+        {
+            result = true;
+            
+            switch (e.getID())
+            {
+                case MouseEvent.MOUSE_CLICKED:
+                    mouse.setMouseClicked((MouseEvent)e);
+                    break;
+                    
+                case MouseEvent.MOUSE_PRESSED:
+                    mouse.setMousePressed((MouseEvent)e);
+                    break;
+                    
+                case MouseEvent.MOUSE_RELEASED:
+                    mouse.setMouseReleased((MouseEvent)e);
+                    break;
+                    
+                case MouseEvent.MOUSE_ENTERED:
+                    mouse.setMouseEntered(((MouseEvent)e).getPoint());
+                    break;
+                    
+                case MouseEvent.MOUSE_EXITED:
+                    mouse.setMouseExited(((MouseEvent)e).getPoint());
+                    break;
+                    
+                case MouseEvent.MOUSE_MOVED:
+                    mouse.setMouseMoved(((MouseEvent)e).getPoint());
+                    break;
+                    
+                case MouseEvent.MOUSE_DRAGGED:
+                    mouse.setMouseDragged(((MouseEvent)e).getPoint());
+                    break;
+                    
+                case KeyEvent.KEY_PRESSED:
+                    keyboard.setKeyPressed(((KeyEvent)e).getKeyCode());
+                    break;
+                    
+                case KeyEvent.KEY_RELEASED:
+                    keyboard.setKeyReleased(((KeyEvent)e).getKeyCode());
+                    break;
+                    
+                case KeyEvent.KEY_TYPED:
+                    keyboard.setKeyTyped(((KeyEvent)e).getKeyChar());
+                    break;
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Get a snapshot of the game that can be drawn on another thread
+     * @return Snapshot
+     */
+    public Snapshot getSnapshot()
+    {
+        //while loading or when the menu is visible the engine is drawn directly,
+        //the same snapshot is returned so it is only published again when the screen changes
+        if (resources.isLoading() || menu == null || !menu.isMenuFinished() || !menu.hasFocus() || puzzles == null)
+        {
+            if (screenSnapshot == null || snapshotVersion != screenVersion)
+            {
+                screenSnapshot = new Snapshot(null, null, null, false);
+                snapshotVersion = screenVersion;
+            }
+            
+            return screenSnapshot;
+        }
+        
+        return puzzles.getSnapshot((!Main.HIDE_MOUSE) ? mouse.getLocation() : null, mouse.isMouseDragged());
     }
     
     public Main getMain()
@@ -137,13 +309,68 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
     @Override
     public void reset() throws Exception
     {
-        puzzles = new Puzzles();
+        //the previous puzzles and the round they were preparing are no longer needed
+        if (puzzles != null)
+            puzzles.dispose();
+        
+        puzzles = new Puzzles(random.split(), cutSheetFiles);
         puzzles.reset(this);
         
         boolean audioEnabled = (menu.getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Sound) == 0);
         resources.setAudioEnabled(audioEnabled);
     }
     
+    /**
+     * Add the areas of the screen that have changed since the last time this was called.
+     * While loading or when the menu is visible the entire screen is drawn when it changes.
+     * @param region The areas of the screen that need to be drawn again
+     */
+    public void addDirtyRegion(final DirtyRegion region)
+    {
+        final boolean full = (resources.isLoading() || menu == null || !menu.isMenuFinished() || !menu.hasFocus() || puzzles == null);
+        
+        //also draw everything the frame after so anything drawn on top (the menu) is removed
+        if (full ? regionVersion != screenVersion : previousFull)
+            region.setFull();
+        
+        previousFull = full;
+        regionVersion = screenVersion;
+        
+        if (puzzles != null)
+            puzzles.addDirtyRegion(region);
+        
+        //the area where the mouse was and where it is now
+        region.add(cursor);
+        
+        final Point p = mouse.getLocation();
+        
+        if (p != null && !resources.isLoading() && !Main.HIDE_MOUSE && resources.getMenuImage(ResourceManager.MenuImage.Mouse) != null && resources.getMenuImage(ResourceManager.MenuImage.MouseDrag) != null)
+        {
+            final Image image = resources.getMenuImage(ResourceManager.MenuImage.Mouse);
+            final Image drag  = resources.getMenuImage(ResourceManager.MenuImage.MouseDrag);
+            
+            //the cursor image changes while dragging so cover both
+            cursor.setBounds(p.x, p.y, Math.max(image.getWidth(null), drag.getWidth(null)), Math.max(image.getHeight(null), drag.getHeight(null)));
+            region.add(cursor);
+        }
+        else
+        {
+            cursor.setBounds(0, 0, 0, 0);
+        }
+    }
+    
+    /**
+     * Add the areas of the screen that change when the snapshot is drawn,
+     * this is called by the thread drawing the game
+     * @param region The areas of the screen that need to be drawn again
+     * @param snapshot The snapshot that will be drawn, if null or it has no puzzles nothing is added
+     */
+    public void addDirtyRegion(final DirtyRegion region, final Snapshot snapshot)
+    {
+        if (snapshot != null && snapshot.hasPuzzles())
+            Puzzles.addDirtyRegion(region, snapshot.getPuzzles());
+    }
+    
     /**
      * Draw our game to the Graphics object whether resources are still loading or the game is intact
      * @param g
@@ -170,6 +397,33 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
         return g;
     }
     
+    /**
+     * Draw the game as it was when the snapshot was created
+     * @param g
+     * @param snapshot The snapshot to draw, if the snapshot has no puzzles the engine is drawn
+     * @return Graphics
+     * @throws Exception 
+     */
+    public Graphics render(Graphics g, final Snapshot snapshot) throws Exception
+    {
+        if (snapshot == null || !snapshot.hasPuzzles())
+            return render(g);
+        
+        Graphics2D g2d = (Graphics2D)g;
+        
+        Font f = g2d.getFont();
+        g2d.setFont(resources.getGameFont(ResourceManager.GameFont.Dialog).deriveFont(Font.PLAIN, 16));
+        
+        Puzzles.render(g2d, main.getScreen(), snapshot.getPuzzles(), snapshot.getCountdown());
+        
+        g2d.setFont(f);
+        
+        if (snapshot.getMouse() != null)
+            drawMouse(g, snapshot.getMouse(), snapshot.isMouseDragged());
+        
+        return g;
+    }
+    
     /**
      * Draw our game elements
      * @param g2d Graphics2D object that game elements will be written to
@@ -208,18 +462,24 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
         {
             Point p = mouse.getLocation();
 
-            if (p != null && resources.getMenuImage(ResourceManager.MenuImage.Mouse) != null && resources.getMenuImage(ResourceManager.MenuImage.MouseDrag) != null)
-            {
-                if (mouse.isMouseDragged())
-                    g.drawImage(resources.getMenuImage(ResourceManager.MenuImage.MouseDrag), p.x, p.y, null);
-                else
-                    g.drawImage(resources.getMenuImage(ResourceManager.MenuImage.Mouse), p.x, p.y, null);
-            }
+            if (p != null)
+                drawMouse(g, p, mouse.isMouseDragged());
         }
 
         return g;
     }
     
+    private void drawMouse(final Graphics g, final Point p, final boolean dragged)
+    {
+        if (resources.getMenuImage(ResourceManager.MenuImage.Mouse) != null && resources.getMenuImage(ResourceManager.MenuImage.MouseDrag) != null)
+        {
+            if (dragged)
+                g.drawImage(resources.getMenuImage(ResourceManager.MenuImage.MouseDrag), p.x, p.y, null);
+            else
+                g.drawImage(resources.getMenuImage(ResourceManager.MenuImage.Mouse), p.x, p.y, null);
+        }
+    }
+    
     public ResourceManager getResources()
     {
         return resources;
@@ -228,61 +488,61 @@ public class Engine implements KeyListener, MouseMotionListener, MouseListener,
     @Override
     public void keyReleased(KeyEvent e)
     {
-        keyboard.setKeyReleased(e.getKeyCode());
+        input.add(e);
     }
     
     @Override
     public void keyPressed(KeyEvent e)
     {
-        keyboard.setKeyPressed(e.getKeyCode());
+        input.add(e);
     }
     
     @Override
     public void keyTyped(KeyEvent e)
     {
-        keyboard.setKeyTyped(e.getKeyChar());
+        input.add(e);
     }
     
     @Override
     public void mouseClicked(MouseEvent e)
     {
-        mouse.setMouseClicked(e);
+        input.add(e);
     }
     
     @Override
     public void mousePressed(MouseEvent e)
     {
-        mouse.setMousePressed(e);
+        input.add(e);
     }
     
     @Override
     public void mouseReleased(MouseEvent e)
     {
-        mouse.setMouseReleased(e);
+        input.add(e);
     }
     
     @Override
     public void mouseEntered(MouseEvent e)
     {
-        mouse.setMouseEntered(e.getPoint());
+        input.add(e);
     }
     
     @Override
     public void mouseExited(MouseEvent e)
     {
-        mouse.setMouseExited(e.getPoint());
+        input.add(e);
     }
     
     @Override
     public void mouseMoved(MouseEvent e)
     {
-        mouse.setMouseMoved(e.getPoint());
+        input.add(e);
     }
     
     @Override
     public void mouseDragged(MouseEvent e)
     {
-        mouse.setMouseDragged(e.getPoint());
+        input.add(e);
     }
     
     public Mouse getMouse()
@@ -0,0 +1,283 @@
+package com.gamesbykevin.puzzle2.main;
+
+import com.gamesbykevin.framework.resources.Resources;
+
+import com.gamesbykevin.puzzle2.shared.Workers;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.swing.ImageIcon;
+
+/**
+ * The game images are only loaded when a round needs them. The images
+ * that have been loaded are kept until they use more memory than allowed,
+ * then the image used the longest time ago is removed first.
+ * An image can be loaded in the background before it is needed.
+ * @author GOD
+ */
+public final class GameImageCache
+{
+    //where each image is, {0} is replaced by the index of the key
+    private final String location;
+    
+    //the key of every image
+    private final Object[] keys;
+    
+    //the most bytes the decoded images can use, the image just loaded is always kept
+    private final long maxBytes;
+    
+    //the images loaded in the order they were used, the first was used the longest time ago
+    private final LinkedHashMap<Object, Image> images = new LinkedHashMap<>(16, .75f, true);
+    
+    //the images being loaded in the background
+    private final HashMap<Object, Future<Image>> loading = new HashMap<>();
+    
+    //the bytes used by the decoded images
+    private long bytes = 0;
+    
+    //how many times an image was found or had to be loaded
+    private long hits = 0, misses = 0;
+    
+    //the class used to find the images
+    private Class<?> source;
+    
+    /**
+     * @param location Where each image is, {0} is replaced by the index of the key
+     * @param keys The key of every image
+     * @param maxBytes The most bytes the decoded images can use
+     */
+    public GameImageCache(final String location, final Object[] keys, final long maxBytes)
+    {
+        this.location = location;
+        this.keys = keys;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Set the class used to find the images, this has to be set before any image is loaded
+     * @param source
+     */
+    public synchronized void setSource(final Class<?> source)
+    {
+        this.source = source;
+    }
+    
+    /**
+     * Get the image, if it isn't loaded this will wait until it is
+     * @param key
+     * @return Image
+     * @throws Exception if the image could not be loaded
+     */
+    public Image get(final Object key) throws Exception
+    {
+        final Future<Image> future;
+        
+        synchronized (this)
+        {
+            final Image image = images.get(key);
+            
+            if (image != null)
+            {
+                hits++;
+                return image;
+            }
+            
+            misses++;
+            
+            future = prefetch(key);
+        }
+        
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception)e.getCause();
+            
+            throw e;
+        }
+    }
+    
+    /**
+     * Start loading the image in the background if it isn't loaded or already loading
+     * @param key
+     * @return Future<Image> The image being loaded, null if it is already loaded
+     */
+    public synchronized Future<Image> prefetch(final Object key)
+    {
+        if (images.containsKey(key))
+            return null;
+        
+        Future<Image> future = loading.get(key);
+        
+        if (future == null)
+        {
+            //the low priority threads so loading never waits in front of the work the game needs now
+            future = Workers.getBackground().submit(new Callable<Image>()
+            {
+                @Override
+                public Image call() throws Exception
+                {
+                    try
+                    {
+                        final BufferedImage image = load(key);
+                        add(key, image);
+                        return image;
+                    }
+                    finally
+                    {
+                        removeLoading(key);
+                    }
+                }
+            });
+            
+            loading.put(key, future);
+        }
+        
+        return future;
+    }
+    
+    /**
+     * Decode the image with the framework the same way every other image is loaded
+     * @throws Exception if the image could not be loaded
+     */
+    private BufferedImage load(final Object key) throws Exception
+    {
+        final Class<?> source;
+        
+        synchronized (this)
+        {
+            source = this.source;
+        }
+        
+        Resources resources = new Resources(Resources.LoadMethod.OnePerFrame, new String[]{MessageFormat.format(location, Arrays.asList(keys).indexOf(key))}, new Object[]{key}, Resources.Type.Image);
+        
+        while (!resources.isLoadingComplete())
+        {
+            resources.loadResources(source);
+        }
+        
+        return toBufferedImage(key, resources.getImage(key));
+    }
+    
+    /**
+     * Images from the toolkit finish loading in the background and their size isn't known until 
+     * they have, so wait for the image and copy it so the bytes it uses can always be counted
+     * @throws Exception if the image could not be loaded
+     */
+    private static BufferedImage toBufferedImage(final Object key, final Image image) throws Exception
+    {
+        if (image instanceof BufferedImage)
+            return (BufferedImage)image;
+        
+        //this waits until the image has loaded
+        final Image loaded = (image != null) ? new ImageIcon(image).getImage() : null;
+        
+        if (loaded == null || loaded.getWidth(null) < 1 || loaded.getHeight(null) < 1)
+            throw new Exception("Unable to load game image " + key);
+        
+        final BufferedImage result = new BufferedImage(loaded.getWidth(null), loaded.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        
+        Graphics2D g2d = result.createGraphics();
+        g2d.drawImage(loaded, 0, 0, null);
+        g2d.dispose();
+        
+        return result;
+    }
+    
+    private synchronized void removeLoading(final Object key)
+    {
+        loading.remove(key);
+    }
+    
+    /**
+     * Add the image that was loaded and remove the images used the longest time ago if there are too many bytes
+     */
+    private synchronized void add(final Object key, final BufferedImage image)
+    {
+        images.put(key, image);
+        bytes += getBytes(image);
+        
+        for (Iterator<Map.Entry<Object, Image>> i = images.entrySet().iterator(); i.hasNext() && bytes > maxBytes; )
+        {
+            final Map.Entry<Object, Image> entry = i.next();
+            
+            if (entry.getKey().equals(key))
+                continue;
+            
+            bytes -= getBytes((BufferedImage)entry.getValue());
+            i.remove();
+        }
+    }
+    
+    /**
+     * The bytes used by the decoded image
+     * @param image
+     * @return long
+     */
+    private static long getBytes(final BufferedImage image)
+    {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        
+        return (long)buffer.getSize() * buffer.getNumBanks() * (DataBuffer.getDataTypeSize(buffer.getDataType()) / 8);
+    }
+    
+    /**
+     * The bytes used by the images that are loaded
+     * @return long
+     */
+    public synchronized long getBytes()
+    {
+        return bytes;
+    }
+    
+    /**
+     * The number of images that are loaded
+     * @return int
+     */
+    public synchronized int getSize()
+    {
+        return images.size();
+    }
+    
+    /**
+     * How many times an image that was already loaded was returned
+     * @return long
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+    
+    /**
+     * How many times an image had to be loaded or waited for
+     * @return long
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+    
+    /**
+     * Remove every image, the images being loaded are not stopped
+     */
+    public synchronized void clear()
+    {
+        images.clear();
+        bytes = 0;
+    }
+}
\ No newline at end of file
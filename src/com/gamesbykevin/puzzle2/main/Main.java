@@ -1,14 +1,27 @@
 package com.gamesbykevin.puzzle2.main;
 
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.*;
 
+import com.gamesbykevin.puzzle2.shared.DirtyRegion;
 import com.gamesbykevin.puzzle2.shared.Shared;
 
 public class Main extends Thread
 {
-    //image where all game/menu elements will be written to
-    private Image bufferedImage;
+    //image where all game/menu elements will be written to, kept in video memory and re-used every frame
+    private VolatileImage bufferedImage;
+    
+    //the window the game is shown on, a canvas is used so the image can be shown with a buffer strategy
+    private Canvas canvas;
+    
+    //the area of the window the image is drawn to
+    private final Rectangle windowArea = new Rectangle();
     
     //our dimensions for the regular and full screen window
     private Rectangle originalSizeWindow;
@@ -23,12 +36,54 @@ public class Main extends Thread
     //do we hide mouse when the menu is not visible and actual gameplay started
     public static boolean HIDE_MOUSE = false;//(DEBUG_MODE);//true;
     
+    //do we only draw the areas of the screen that have changed, if false the entire screen is drawn every frame
+    public static boolean DIRTY_RENDERING = true;
+    
+    //do we draw the game on a separate thread from the thread updating the game
+    public static boolean SPLIT_THREADS = true;
+    
+    //the latest snapshot of the game published by the update thread for the render thread
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    
+    //the last snapshot published, only used by the update thread
+    private Snapshot published;
+    
+    //the areas that changed in the updates since the render thread last took a snapshot,
+    //the render thread takes them together with the snapshot while holding this
+    private final DirtyRegion pendingRegion = new DirtyRegion();
+    
+    //held while the game is updated, the render thread only needs it to draw the loading screen or menu
+    private final Object updateLock = new Object();
+    
+    //thread drawing the game when the threads are split
+    private volatile Thread renderThread;
+    
+    //the areas of the screen that need to be drawn this frame
+    private final DirtyRegion dirtyRegion = new DirtyRegion();
+    
+    //does the entire screen need to be drawn, set when the window needs to be painted
+    private volatile boolean fullRedraw = true;
+    
+    //the area where the fps/ups counter was drawn and the text drawn
+    private final Rectangle counterArea = new Rectangle();
+    private String counterDesc = "";
+    
     //do we want to display our fps/ups counter, true by default
     private final boolean showCounter;
     
     //how many nanoseconds bewteen each engine update
     private double nanoSecondsPerUpdate;
     
+    //the fewest nanoseconds between each frame drawn, 0 if there is no limit
+    private final long nanoSecondsPerFrame;
+    
+    //the most updates that will run to catch up before a frame is drawn,
+    //if the game is further behind the extra time is dropped so the game slows down instead of freezing
+    private static final int MAX_UPDATES_PER_FRAME = 5;
+    
+    //parking isn't exact so we stop parking this many nanoseconds before it is time and spin the rest
+    private static final long SPIN_NANO_SECONDS = 1000000L;
+    
     //frames per second
     private int frames = 0;
     
@@ -36,10 +91,10 @@ public class Main extends Thread
     private int updates = 0;
     
     //display this variable every second
-    private int framesDisplay  = 0;
+    private volatile int framesDisplay  = 0;
     
     //display this variable every second
-    private int updatesDisplay = 0;
+    private volatile int updatesDisplay = 0;
     
     //how many nanoseconds are there in one second
     private static final double NANO_SECONDS_PER_SECOND = 1000000000.0;
@@ -51,9 +106,21 @@ public class Main extends Thread
     private JPanel panel;
     
     public Main(final int ups, final boolean showCounter)
+    {
+        this(ups, Shared.DEFAULT_FPS, showCounter);
+    }
+    
+    /**
+     * @param ups Updates per second
+     * @param fps The most frames drawn per second, 0 for no limit
+     * @param showCounter Do we display the ups/fps counter
+     */
+    public Main(final int ups, final int fps, final boolean showCounter)
     {
         this.showCounter = showCounter;
         
+        this.nanoSecondsPerFrame = (fps > 0) ? (long)(NANO_SECONDS_PER_SECOND / fps) : 0;
+        
         //the dimensions used for original and full screen
         originalSizeWindow = new Rectangle(0, 0, Shared.WINDOW_WIDTH, Shared.WINDOW_HEIGHT);
         fullSizeWindow     = new Rectangle(originalSizeWindow);
@@ -69,62 +136,277 @@ public class Main extends Thread
     {
         engine = new Engine(this);
         
-        //now that engine is created apply listeners so we can detect key/mouse input
+        //now that engine is created apply listeners so we can detect key/mouse input,
+        //the keyboard focus stays with the container and the canvas covering it receives the mouse
         if (applet != null)
         {
             applet.addKeyListener(engine);
-            applet.addMouseMotionListener(engine);
-            applet.addMouseListener(engine);
         }
         else
         {
             panel.addKeyListener(engine);
-            panel.addMouseMotionListener(engine);
-            panel.addMouseListener(engine);
         }
+        
+        canvas.addMouseMotionListener(engine);
+        canvas.addMouseListener(engine);
     }
     
     public void run()
     {
-        //we need to determine the last run so we can calculate ups/fps
-        long lastRun = System.nanoTime();
+        //the game is drawn on its own thread and this thread only updates the game
+        if (SPLIT_THREADS)
+        {
+            renderThread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    render();
+                }
+            }, "render");
+            
+            renderThread.setDaemon(true);
+            renderThread.start();
+        }
+        
+        //when the next update and frame are due
+        long nextUpdate = System.nanoTime();
+        long nextFrame  = nextUpdate;
         
         //this will reset ups/fps count every second
         long timer = System.currentTimeMillis();
         
-        double delta = 0;
+        //has the game been updated since the last frame was drawn
+        boolean changed = true;
         
         while(true)
         {
             try
             {
-                long now = System.nanoTime();
-                delta += (now - lastRun) / nanoSecondsPerUpdate;
-                lastRun = now;
+                int count = 0;
                 
-                while(delta >= 1)
+                //run the updates that are due, the time still passes if there is no engine so we don't spin
+                while (System.nanoTime() - nextUpdate >= 0 && count < MAX_UPDATES_PER_FRAME)
                 {
                     if (engine != null)
                     {
-                        engine.update(this);
-
+                        update();
                         updates++;
-                        delta--;
+                        changed = true;
                     }
+                    
+                    nextUpdate += getTimeDeductionPerFrame();
+                    count++;
                 }
                 
-                renderImage();
-                drawScreen();
-                frames++;
+                //too far behind to catch up, so drop the time
+                if (System.nanoTime() - nextUpdate >= 0)
+                    nextUpdate = System.nanoTime();
+                
+                //nothing has changed if the game hasn't been updated so there is nothing new to draw
+                if (renderThread == null && changed && System.nanoTime() - nextFrame >= 0)
+                {
+                    //the snapshot is drawn right away so the engine isn't updated while it is drawn
+                    if (renderScreen((engine != null) ? engine.getSnapshot() : null))
+                        frames++;
+                    
+                    changed = false;
+                    nextFrame = getNextFrame(nextFrame);
+                }
                 
                 if (System.currentTimeMillis() - timer > 1000)
                 {
                     timer += 1000;
                     
                     updatesDisplay = updates;
-                    framesDisplay = frames;
-                    
                     updates = 0;
+                    
+                    if (renderThread == null)
+                    {
+                        framesDisplay = frames;
+                        frames = 0;
+                    }
+                }
+                
+                //wait until the next update, or the next frame if there is something to draw
+                if (renderThread == null && changed && nextFrame - nextUpdate < 0)
+                {
+                    waitUntil(nextFrame);
+                }
+                else
+                {
+                    waitUntil(nextUpdate);
+                }
+            }
+            catch(Exception e)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Get when the frame after the current frame can be drawn
+     * @param nextFrame When the current frame was due
+     * @return long
+     */
+    private long getNextFrame(final long nextFrame)
+    {
+        final long now = System.nanoTime();
+        
+        //if we are behind don't try to catch up by drawing frames quicker
+        if (now - (nextFrame + nanoSecondsPerFrame) > 0)
+            return now;
+        
+        return nextFrame + nanoSecondsPerFrame;
+    }
+    
+    /**
+     * Wait until the given time. The thread is parked until just 
+     * before the time and then spins because parking isn't exact.
+     * @param time The time from System.nanoTime()
+     */
+    private static void waitUntil(final long time)
+    {
+        while (true)
+        {
+            final long remaining = time - System.nanoTime();
+            
+            if (remaining <= 0)
+                return;
+            
+            if (remaining > SPIN_NANO_SECONDS)
+            {
+                LockSupport.parkNanos(remaining - SPIN_NANO_SECONDS);
+            }
+            else
+            {
+                Thread.yield();
+            }
+        }
+    }
+    
+    /**
+     * Update the game, if the threads are split a snapshot 
+     * of the game is then published for the render thread
+     */
+    private void update()
+    {
+        if (renderThread == null)
+        {
+            engine.update(this);
+            return;
+        }
+        
+        synchronized (updateLock)
+        {
+            engine.update(this);
+            
+            final Snapshot next = engine.getSnapshot();
+            
+            synchronized (pendingRegion)
+            {
+                //the changes are kept until the render thread draws a snapshot
+                engine.addDirtyRegion(pendingRegion);
+                
+                //only publish the snapshot if something changed so the same frame isn't drawn again
+                if (next.isMatch(published))
+                    return;
+                
+                published = next;
+                next.retain();
+                
+                //the render thread never took the previous snapshot so nothing will draw it
+                final Snapshot previous = snapshot.getAndSet(next);
+                
+                if (previous != null)
+                    previous.release();
+            }
+        }
+        
+        //let the render thread know there is a new snapshot
+        LockSupport.unpark(renderThread);
+    }
+    
+    /**
+     * Draw the latest snapshot each time one is published, this is run by the render thread
+     */
+    private void render()
+    {
+        //the snapshot last drawn, kept so it can be drawn again when the window needs to be painted
+        Snapshot last = null;
+        
+        //when the next frame can be drawn
+        long nextFrame = System.nanoTime();
+        
+        //this will reset fps count every second
+        long timer = System.currentTimeMillis();
+        
+        while(true)
+        {
+            try
+            {
+                //don't draw more frames than the limit, the latest snapshot is checked after waiting
+                if (System.nanoTime() - nextFrame < 0)
+                    waitUntil(nextFrame);
+                
+                Snapshot current;
+                
+                //take the snapshot and the changes up to it together so no change is missed
+                synchronized (pendingRegion)
+                {
+                    current = snapshot.getAndSet(null);
+                    
+                    if (current != null)
+                    {
+                        dirtyRegion.add(pendingRegion);
+                        pendingRegion.clear();
+                    }
+                }
+                
+                if (current != null)
+                {
+                    //the update thread can now re-use what the previous snapshot used
+                    if (last != null)
+                        last.release();
+                    
+                    last = current;
+                }
+                else if (fullRedraw && last != null)
+                {
+                    //nothing new but the window needs to be painted, so draw the last snapshot again
+                    current = last;
+                }
+                else
+                {
+                    //wait until there is something new to draw or the window needs to be painted
+                    LockSupport.park(this);
+                    continue;
+                }
+                
+                nextFrame = getNextFrame(nextFrame);
+                
+                if (current.hasPuzzles())
+                {
+                    //the snapshot doesn't change so we don't need to wait for the update thread
+                    renderScreen(current);
+                }
+                else
+                {
+                    //the loading screen and menu are drawn from the engine, so the engine can't be updated at the same time
+                    synchronized (updateLock)
+                    {
+                        renderScreen(current);
+                    }
+                }
+                
+                frames++;
+                
+                if (System.currentTimeMillis() - timer > 1000)
+                {
+                    timer += 1000;
+                    
+                    framesDisplay = frames;
                     frames = 0;
                 }
             }
@@ -138,11 +420,57 @@ public class Main extends Thread
     public void setApplet(final JApplet applet)
     {
         this.applet = applet;
+        
+        addCanvas(applet.getContentPane(), applet);
     }
     
     public void setPanel(final JPanel panel)
     {
         this.panel = panel;
+        
+        addCanvas(panel, panel);
+    }
+    
+    /**
+     * Add the canvas the game is shown on so it covers the entire container
+     * @param container 
+     * @param focusOwner The component that receives the keyboard input
+     */
+    private void addCanvas(final Container container, final Component focusOwner)
+    {
+        canvas = new Canvas()
+        {
+            /**
+             * The canvas was uncovered or resized, nothing is drawn here
+             * because the frames are shown by the thread drawing the game
+             * @param g 
+             */
+            @Override
+            public void paint(Graphics g)
+            {
+                setFullRedraw();
+            }
+            
+            @Override
+            public void update(Graphics g)
+            {
+                paint(g);
+            }
+        };
+        
+        //the container keeps the keyboard focus, clicking the game gives the focus back to it
+        canvas.setFocusable(false);
+        canvas.addMouseListener(new MouseAdapter()
+        {
+            @Override
+            public void mousePressed(MouseEvent e)
+            {
+                focusOwner.requestFocusInWindow();
+            }
+        });
+        
+        container.setLayout(new BorderLayout());
+        container.add(canvas, BorderLayout.CENTER);
     }
     
     public JApplet getApplet()
@@ -167,18 +495,40 @@ public class Main extends Thread
         }
     }
     
-    private Image getBufferedImage()
+
+    /**
+     * Get the image we draw to, the image is created once and then re-used.
+     * The image is checked every time because the contents can be lost
+     * (for example when the display mode changes), if so everything is drawn again.
+     * @return VolatileImage The image, null if the window can't create one yet
+     */
+    private VolatileImage getBufferedImage()
     {
         if (bufferedImage == null)
         {
-            if (applet != null)
-            {
-                bufferedImage = applet.createImage(originalSizeWindow.width, originalSizeWindow.height);
-            }
-            else
-            {
-                bufferedImage = panel.createImage(originalSizeWindow.width, originalSizeWindow.height);
-            }
+            bufferedImage = canvas.createVolatileImage(originalSizeWindow.width, originalSizeWindow.height);
+            
+            //the window isn't displayable yet
+            if (bufferedImage == null)
+                return null;
+            
+            //a new image is blank so everything needs to be drawn
+            dirtyRegion.setFull();
+        }
+        
+        switch (bufferedImage.validate(canvas.getGraphicsConfiguration()))
+        {
+            case VolatileImage.IMAGE_INCOMPATIBLE:
+                //the image can't be used on this display so create a new one
+                bufferedImage.flush();
+                bufferedImage = canvas.createVolatileImage(originalSizeWindow.width, originalSizeWindow.height);
+                dirtyRegion.setFull();
+                break;
+                
+            case VolatileImage.IMAGE_RESTORED:
+                //the image can be used again but what was drawn on it is gone
+                dirtyRegion.setFull();
+                break;
         }
         
         return bufferedImage;
@@ -206,6 +556,18 @@ public class Main extends Thread
         }
     }
     
+    /**
+     * The entire screen will be drawn next frame, 
+     * this is needed when the window has been covered or resized
+     */
+    public void setFullRedraw()
+    {
+        this.fullRedraw = true;
+        
+        //the render thread may be waiting for a new snapshot
+        LockSupport.unpark(renderThread);
+    }
+    
     /**
      * Gets the number of nanoseconds between each update
      * 
@@ -217,28 +579,107 @@ public class Main extends Thread
     }
     
     /**
-     * Writes all game/menu elements in our engine to our bufferedImage.
-     * If set true also write our ups/fps counter
+     * Draw the game to our bufferedImage and then draw the image to the window.
+     * If the contents of the image are lost before it is drawn to the window 
+     * everything is drawn again.
      * 
+     * @param current The snapshot to draw, null to draw the engine directly
+     * @return boolean true if anything was drawn, false if nothing changed
      * @throws Exception 
      */
-    private void renderImage() throws Exception
+    private boolean renderScreen(final Snapshot current) throws Exception
     {
-        Image tmp = getBufferedImage();
+        //the flag is cleared before drawing so a paint during this frame is drawn next frame
+        if (fullRedraw || !DIRTY_RENDERING || engine == null)
+        {
+            fullRedraw = false;
+            dirtyRegion.setFull();
+        }
+
+        //when the threads are split the render thread has already added the changes from the updates
+        if (engine != null && renderThread == null)
+            engine.addDirtyRegion(dirtyRegion);
+        
+        //what was last drawn is only known by the thread drawing the game
+        if (engine != null)
+            engine.addDirtyRegion(dirtyRegion, current);
+
+        //the counter text changes every second
+        if (showCounter && !getCounterDesc().equals(counterDesc))
+            dirtyRegion.add(counterArea);
+        
+        //nothing has changed since the last frame
+        if (dirtyRegion.isEmpty())
+            return false;
         
-        if (tmp != null)
+        do
         {
-            Graphics g = tmp.getGraphics();
+            final VolatileImage image = getBufferedImage();
+            
+            //nothing can be drawn until the window is displayable
+            if (image == null)
+            {
+                fullRedraw = true;
+                return false;
+            }
+            
+            renderImage(image, current);
+            drawScreen(image);
+        }
+        while (bufferedImage.contentsLost());
+        
+        //everything has been drawn
+        dirtyRegion.clear();
+        
+        return true;
+    }
+    
+    /**
+     * Writes all game/menu elements in our engine to the image.
+     * Only the areas that have changed since the last frame are drawn again,
+     * the rest of the image is kept from the previous frame.
+     * If set true also write our ups/fps counter
+     * 
+     * @param image
+     * @param current The snapshot to draw, null to draw the engine directly
+     * @throws Exception 
+     */
+    private void renderImage(final VolatileImage image, final Snapshot current) throws Exception
+    {
+        Graphics g = image.getGraphics();
 
-            g.setColor(Color.BLACK);
-            g.fillRect(originalSizeWindow.x, originalSizeWindow.y, originalSizeWindow.width, originalSizeWindow.height);
+        if (dirtyRegion.isFull())
+        {
+            renderImage(g, current);
+        }
+        else
+        {
+            //draw everything within each area that has changed
+            for (int i=0; i < dirtyRegion.getCount(); i++)
+            {
+                g.setClip(dirtyRegion.get(i));
+                renderImage(g, current);
+            }
 
-            if (engine != null)
-                engine.render(g);
+            g.setClip(null);
+        }
 
-            if (showCounter)
-                renderCounter(g);
+        if (showCounter)
+        {
+            renderCounter(g);
+            dirtyRegion.add(counterArea);
         }
+
+        g.dispose();
+    }
+    
+    private void renderImage(final Graphics g, final Snapshot current) throws Exception
+    {
+        g.setColor(Color.BLACK);
+        g.fillRect(originalSizeWindow.x, originalSizeWindow.y, originalSizeWindow.width, originalSizeWindow.height);
+
+        if (engine != null)
+            engine.render(g, current);
     }
     
     public boolean hasFocus()
@@ -254,20 +695,29 @@ public class Main extends Thread
         }
     }
     
+    private String getCounterDesc()
+    {
+        return updatesDisplay + " UPS, " + framesDisplay + " FPS";
+    }
+    
     private Graphics renderCounter(Graphics g)
     {
-        final String result = updatesDisplay + " UPS, " + framesDisplay + " FPS";
+        final String result = getCounterDesc();
+        
+        //remember what was drawn so we know when it changes
+        counterDesc = result;
+        
         final int width = g.getFontMetrics().stringWidth(result);
         final int height = g.getFontMetrics().getHeight() + 1;
-        final Rectangle tmp;
+        final Rectangle tmp = counterArea;
         
         if (applet != null)
         {
-            tmp = new Rectangle(applet.getWidth() - width, applet.getHeight() - height, width, height);
+            tmp.setBounds(applet.getWidth() - width, applet.getHeight() - height, width, height);
         }
         else
         {
-            tmp = new Rectangle(panel.getWidth() - width, panel.getHeight() - height, width, height);
+            tmp.setBounds(panel.getWidth() - width, panel.getHeight() - height, width, height);
         }
 
         g.setColor(Color.BLACK);
@@ -278,52 +728,59 @@ public class Main extends Thread
         return g;
     }
     
-    private void drawScreen()
+    /**
+     * Draw the image to the window. The image is copied to the back buffer which is then shown,
+     * if the buffers are lost before they are shown the image is copied again.
+     * The back buffer isn't kept between frames so the entire image is copied,
+     * only the areas that changed are drawn to the image itself.
+     * @param image 
+     */
+    private void drawScreen(final VolatileImage image)
     {
-        if (bufferedImage == null)
-            return;
-        
-        Graphics g;
-        
-        //create the rectangle on the fly for full screen
-        Rectangle r;
-        
-        if (applet != null)
-        {
-            g = applet.getGraphics();
-            r = new Rectangle(0, 0, applet.getWidth(), applet.getHeight());
-        }
-        else
-        {
-            g = panel.getGraphics();
-            r = new Rectangle(0, 0, panel.getWidth(), panel.getHeight());
-        }
-        
         try
         {
-            int dx1 = r.x;
-            int dy1 = r.y;
-            int dx2 = r.x + r.width;
-            int dy2 = r.y + r.height;
-
-            int sx1 = 0;
-            int sy1 = 0;
-            int sx2 = bufferedImage.getWidth(null);
-            int sy2 = bufferedImage.getHeight(null);
-
-            g.drawImage(bufferedImage, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null);
-
+            BufferStrategy buffers = canvas.getBufferStrategy();
+            
+            if (buffers == null)
+            {
+                //the window can't be drawn to yet, the image is kept until it can
+                if (!canvas.isDisplayable())
+                    return;
+                
+                canvas.createBufferStrategy(2);
+                buffers = canvas.getBufferStrategy();
+            }
+            
+            //the window size can change for full screen
+            final Rectangle r = windowArea;
+            r.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
+            
+            do
+            {
+                do
+                {
+                    final Graphics g = buffers.getDrawGraphics();
+                    
+                    try
+                    {
+                        g.drawImage(image, r.x, r.y, r.x + r.width, r.y + r.height, 0, 0, image.getWidth(), image.getHeight(), null);
+                    }
+                    finally
+                    {
+                        g.dispose();
+                    }
+                }
+                while (buffers.contentsRestored());
+                
+                buffers.show();
+            }
+            while (buffers.contentsLost());
+            
             Toolkit.getDefaultToolkit().sync();
-
-            bufferedImage.flush();
-            bufferedImage = null;
-
-            g.dispose();
-            g = null;
         }
-        catch(Exception e)
+        catch (IllegalStateException e)
         {
-            e.printStackTrace();
+            //the canvas was removed from the window while drawing, new buffers are created once it is displayable again
         }
     }
     
@@ -338,6 +795,9 @@ public class Main extends Thread
         
         bufferedImage = null;
         
+        if (canvas != null && canvas.getBufferStrategy() != null)
+            canvas.getBufferStrategy().dispose();
+        
         if (engine != null)
             engine.dispose();
         
@@ -2,12 +2,21 @@ package com.gamesbykevin.puzzle2.main;
 
 import com.gamesbykevin.framework.resources.*;
 
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+import com.gamesbykevin.puzzle2.shared.Workers;
+
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Rectangle;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class will load all resources and provide ways to access them
@@ -15,18 +24,24 @@ import java.util.LinkedHashMap;
  */
 public class ResourceManager 
 {   
+    //do we load every resource at the same time on the worker threads, if false one resource is loaded each update
+    public static boolean PARALLEL_LOADING = true;
+    
     //this will contain all resources
-    private LinkedHashMap everyResource = new LinkedHashMap();
+    private LinkedHashMap<Type, Group> everyResource = new LinkedHashMap<>();
     
     //collections of resources
     private enum Type
     {
-        MenuImage, MenuAudio, GameImage, GameFont, GameAudio
+        MenuImage, MenuAudio, GameFont, GameAudio
     }
     
     //root directory of all resources
     public static final String RESOURCE_DIR = "resources/"; 
     
+    //the most memory the game images can use once they are decoded, enough for the current and next round
+    private static final long GAME_IMAGE_BYTES = 4L * 1024L * 1024L;
+    
     public enum MenuAudio
     {
         MenuChange
@@ -57,16 +72,36 @@ public class ResourceManager
     }
     
     //indicates wether or not we are still loading resources
-    private boolean loading = true;
+    private volatile boolean loading = true;
+    
+    //the resources being loaded on the worker threads, null until loading starts
+    private List<Future<Void>> tasks;
+    
+    //the error that stopped loading, null if nothing has failed
+    private volatile Exception failure;
+    
+    //when loading started and how long it took in nanoseconds
+    private long loadStart = 0, loadTime = 0;
     
-    public ResourceManager()
+    //the game images are only loaded when a round needs them
+    private final GameImageCache gameImages = new GameImageCache(RESOURCE_DIR + "images/game/{0}.jpg", GameImage.values(), GAME_IMAGE_BYTES);
+    
+    //the game image for the next round, it is loaded in the background before it is needed
+    private GameImage nextGameImage;
+    
+    //picks the image for the first round
+    private final SplitRandom random;
+    
+    /**
+     * @param random Picks the image for the first round so the same seed picks the same image
+     */
+    public ResourceManager(final SplitRandom random)
     {
+        this.random = random;
+        
         //load all menu images
         add(Type.MenuImage, (Object[])MenuImage.values(), RESOURCE_DIR + "images/menu/{0}.gif", "Loading Menu Image Resources", Resources.Type.Image);
         
-        //load all game images
-        add(Type.GameImage, (Object[])GameImage.values(), RESOURCE_DIR + "images/game/{0}.jpg", "Loading Game Image Resources", Resources.Type.Image);
-        
         //load all game fonts
         add(Type.GameFont, (Object[])GameFont.values(), RESOURCE_DIR + "font/{0}.ttf", "Loading Game Font Resources", Resources.Type.Font);
         
@@ -77,19 +112,20 @@ public class ResourceManager
         add(Type.GameAudio, (Object[])GameAudio.values(), RESOURCE_DIR + "audio/game/{0}.wav", "Loading Game Audio Resources", Resources.Type.Audio);
     }
     
-    //add a collection of resources audio/image/font/text
-    private void add(final Object key, final Object[] eachResourceKey, final String directory, final String loadDesc, final Resources.Type resourceType)
+    //add a collection of resources audio/image/font/text, each resource is kept on its own so they can be loaded at the same time
+    private void add(final Type key, final Object[] eachResourceKey, final String directory, final String loadDesc, final Resources.Type resourceType)
     {
-        String[] locations = new String[eachResourceKey.length];
-        for (int i=0; i < locations.length; i++)
+        Group group = new Group(loadDesc);
+        
+        for (int i=0; i < eachResourceKey.length; i++)
         {
-            locations[i] = MessageFormat.format(directory, i);
+            Resources resources = new Resources(Resources.LoadMethod.OnePerFrame, new String[]{MessageFormat.format(directory, i)}, new Object[]{eachResourceKey[i]}, resourceType);
+            resources.setDesc(loadDesc);
+            
+            group.resources.put(eachResourceKey[i], resources);
         }
-
-        Resources resources = new Resources(Resources.LoadMethod.OnePerFrame, locations, eachResourceKey, resourceType);
-        resources.setDesc(loadDesc);
         
-        everyResource.put(key, resources);
+        everyResource.put(key, group);
     }
     
     public boolean isLoading()
@@ -97,112 +133,276 @@ public class ResourceManager
         return loading;
     }
     
-    private Resources getResources(Object key)
+    /**
+     * Did a resource fail to load, if so loading has stopped and update should not be called again
+     * @return boolean
+     */
+    public boolean hasFailed()
+    {
+        return (failure != null);
+    }
+    
+    /**
+     * The number of resources that have finished loading
+     * @return int
+     */
+    public int getLoadedCount()
+    {
+        int count = 0;
+        
+        for (Group group : everyResource.values())
+        {
+            count += group.loaded.get();
+        }
+        
+        return count;
+    }
+    
+    /**
+     * How long it took to load every resource
+     * @return long nanoseconds, 0 if still loading
+     */
+    public long getLoadTime()
     {
-        return (Resources)everyResource.get(key);
+        return loadTime;
+    }
+    
+    private Group getResources(Type key)
+    {
+        return everyResource.get(key);
     }
     
     public Font getGameFont(Object key)
     {
-        return getResources(Type.GameFont).getFont(key);
+        return getResources(Type.GameFont).get(key).getFont(key);
+    }
+    
+    /**
+     * Get the game image for this round and pick the image for 
+     * the next round so it can be loaded in the background
+     * @param random
+     * @return Image
+     * @throws Exception if the image could not be loaded
+     */
+    public Image getGameImage(SplitRandom random) throws Exception
+    {
+        final GameImage key;
+        
+        synchronized (this)
+        {
+            key = (nextGameImage != null) ? nextGameImage : getRandomGameImage(random);
+            
+            nextGameImage = getRandomGameImage(random);
+            gameImages.prefetch(nextGameImage);
+        }
+        
+        return getGameImage(key);
     }
     
-    public Image getGameImage()
+    private static GameImage getRandomGameImage(SplitRandom random)
     {
-        return getResources(Type.GameImage).getImage(GameImage.values()[(int)(Math.random() * GameImage.values().length)]);
+        return GameImage.values()[random.nextInt(GameImage.values().length)];
     }
     
-    public Image getGameImage(Object key)
+    /**
+     * Get the game image, it is loaded if it isn't already
+     * @param key
+     * @return Image
+     * @throws Exception if the image could not be loaded
+     */
+    public Image getGameImage(Object key) throws Exception
     {
-        return getResources(Type.GameImage).getImage(key);
+        return gameImages.get(key);
     }
     
     public Image getMenuImage(Object key)
     {
-        return getResources(Type.MenuImage).getImage(key);
+        return getResources(Type.MenuImage).get(key).getImage(key);
     }
     
     public AudioResource getMenuAudio(Object key)
     {
-        return getResources(Type.MenuAudio).getAudio(key);
+        return getResources(Type.MenuAudio).get(key).getAudio(key);
     }
     
     public void playSound(Object key, boolean loop)
     {
-        getResources(Type.GameAudio).playAudio(key, loop);
+        getResources(Type.GameAudio).get(key).playAudio(key, loop);
     }
     
     public void stopSound(Object key)
     {
-        getResources(Type.GameAudio).getAudio(key).stop();
+        getResources(Type.GameAudio).get(key).getAudio(key).stop();
     }
     
     public void stopAllSound()
     {
-        getResources(Type.GameAudio).stopAllAudio();
+        for (Resources r : getResources(Type.GameAudio).resources.values())
+        {
+            r.stopAllAudio();
+        }
     }
     
-    public void update(final Class source) 
+    /**
+     * Continue loading the resources
+     * @param source The class used to find the resources
+     * @throws Exception the first time a resource fails to load, after that nothing happens
+     */
+    public void update(final Class source) throws Exception
     {
-        Object[] keys = everyResource.keySet().toArray();
+        if (failure != null)
+            return;
+        
+        if (loadStart == 0)
+        {
+            loadStart = System.nanoTime();
+            
+            gameImages.setSource(source);
+        }
         
-        for (Object key : keys)
+        if (PARALLEL_LOADING)
         {
-            Resources r = getResources(key);
+            if (tasks == null)
+                startLoading(source);
             
-            if (!r.isLoadingComplete())
+            for (Future<Void> task : tasks)
             {
-                r.loadResources(source);
-                return;
+                if (!task.isDone())
+                    return;
+            }
+            
+            //make sure every resource loaded without an error
+            for (Future<Void> task : tasks)
+            {
+                try
+                {
+                    task.get();
+                }
+                catch (ExecutionException e)
+                {
+                    failure = (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
+                    throw failure;
+                }
+            }
+        }
+        else
+        {
+            for (Group group : everyResource.values())
+            {
+                for (Resources r : group.resources.values())
+                {
+                    if (!r.isLoadingComplete())
+                    {
+                        try
+                        {
+                            r.loadResources(source);
+                        }
+                        catch (Exception e)
+                        {
+                            failure = e;
+                            throw e;
+                        }
+                        
+                        if (r.isLoadingComplete())
+                            group.loaded.incrementAndGet();
+                        
+                        return;
+                    }
+                }
             }
         }
 
         //if this line is reached we are done loading every resource
+        loadTime = System.nanoTime() - loadStart;
         loading = false;
+        
+        //load the image for the first round while the menu is shown
+        synchronized (this)
+        {
+            if (nextGameImage == null)
+            {
+                nextGameImage = getRandomGameImage(random);
+                gameImages.prefetch(nextGameImage);
+            }
+        }
+    }
+    
+    /**
+     * Submit every resource to be loaded on the worker threads, the number of 
+     * threads is limited to the number of processors. The resources are 
+     * submitted in the same order they were added so the menu is loaded first.
+     * @param source The class used to find the resources
+     */
+    private void startLoading(final Class<?> source)
+    {
+        tasks = new ArrayList<>();
+        
+        for (final Group group : everyResource.values())
+        {
+            for (final Resources r : group.resources.values())
+            {
+                tasks.add(Workers.getPool().submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws Exception
+                    {
+                        while (!r.isLoadingComplete())
+                        {
+                            r.loadResources(source);
+                        }
+                        
+                        group.loaded.incrementAndGet();
+                        return null;
+                    }
+                }));
+            }
+        }
     }
     
     public boolean isAudioEnabled()
     {
-        return getResources(Type.GameAudio).isAudioEnabled();
+        return getResources(Type.GameAudio).get(GameAudio.Connect).isAudioEnabled();
     }
     
     public void setAudioEnabled(boolean soundEnabled)
     {
-        Resources r = getResources(Type.GameAudio);
-        
-        if (r.isAudioEnabled() && soundEnabled)
+        if (isAudioEnabled() == soundEnabled)
             return;
         
-        if (!r.isAudioEnabled() && !soundEnabled)
-            return;
-        
-        r.setAudioEnabled(soundEnabled);
-        
-        if (!soundEnabled)
+        for (Resources r : getResources(Type.GameAudio).resources.values())
         {
-            if (r != null)
+            r.setAudioEnabled(soundEnabled);
+            
+            if (!soundEnabled)
                 r.stopAllAudio();
         }
     }
     
     public void dispose()
     {
-        Object[] keys = everyResource.keySet().toArray();
+        //stop loading if we haven't finished
+        if (tasks != null)
+        {
+            for (Future<Void> task : tasks)
+            {
+                task.cancel(false);
+            }
+        }
         
-        for (Object key : keys)
+        for (Group group : everyResource.values())
         {
-            Resources r = getResources(key);
-            
-            if (r != null)
+            for (Resources r : group.resources.values())
+            {
                 r.dispose();
+            }
             
-            r = null;
-            
-            everyResource.put(key, r);
+            group.resources.clear();
         }
         
         everyResource.clear();
         everyResource = null;
+        
+        gameImages.clear();
     }
     
     public Graphics draw(Graphics g, final Rectangle screen)
@@ -210,19 +410,51 @@ public class ResourceManager
         if (!loading)
             return g;
         
-        Object[] keys = everyResource.keySet().toArray();
-        
-        for (Object key : keys)
+        for (Group group : everyResource.values())
         {
-            Resources r = getResources(key);
-            
-            if (!r.isLoadingComplete())
+            if (!group.isLoadingComplete())
             {
-                Progress.draw(g, screen, r.getProgress(), r.getDesc());
+                Progress.draw(g, screen, group.getProgress(), (failure != null) ? "Loading Failed: " + failure.getMessage() : group.desc);
                 return g;
             }
         }
         
         return g;
     }
+    
+    /**
+     * A collection of resources of the same type. Each resource is 
+     * kept on its own so each one can be loaded on a different thread.
+     */
+    private static final class Group
+    {
+        //the description shown while loading
+        private final String desc;
+        
+        //each resource by key
+        private final LinkedHashMap<Object, Resources> resources = new LinkedHashMap<>();
+        
+        //the number of resources that have finished loading
+        private final AtomicInteger loaded = new AtomicInteger();
+        
+        private Group(final String desc)
+        {
+            this.desc = desc;
+        }
+        
+        private Resources get(final Object key)
+        {
+            return resources.get(key);
+        }
+        
+        private boolean isLoadingComplete()
+        {
+            return (loaded.get() >= resources.size());
+        }
+        
+        private float getProgress()
+        {
+            return (resources.isEmpty()) ? 1 : (float)loaded.get() / resources.size();
+        }
+    }
 }
\ No newline at end of file
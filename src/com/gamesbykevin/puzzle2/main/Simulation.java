@@ -0,0 +1,224 @@
+package com.gamesbykevin.puzzle2.main;
+
+import com.gamesbykevin.framework.input.Mouse;
+import com.gamesbykevin.framework.util.TimerCollection;
+
+import com.gamesbykevin.puzzle2.ai.ArtificialIntelligence;
+import com.gamesbykevin.puzzle2.objects.Cutter;
+import com.gamesbykevin.puzzle2.objects.Puzzle;
+import com.gamesbykevin.puzzle2.objects.Puzzles;
+import com.gamesbykevin.puzzle2.shared.Shared;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plays cpu only matches without a window or any drawing. Time only passes
+ * when the puzzles are updated so the matches run as fast as possible,
+ * the time each puzzle took to complete is recorded.
+ * @author GOD
+ */
+public class Simulation
+{
+    //the time that passes each update, the same as the game
+    private static final long TIME_DEDUCTION = (long)(1000000000.0 / Shared.DEFAULT_UPS);
+    
+    //the most time a match can take before we give up on it
+    private static final long MAX_TIME = TimerCollection.toNanoSeconds(60L * 60L * 1000L);
+    
+    //the settings for each match
+    private final int numPieces, numPlayers, difficultyIndex, gameTypeIndex;
+    
+    //the image the puzzles are made from
+    private final Image image;
+    
+    //the puzzles for every match, created from the seed so the matches are the same every run
+    private final Puzzles puzzles;
+    
+    //the time each puzzle took to complete in nanoseconds
+    private long[] times = new long[0];
+    
+    //number of puzzles completed
+    private int count = 0;
+    
+    //number of puzzles that didn't complete
+    private int incomplete = 0;
+    
+    //number of matches played
+    private int matches = 0;
+    
+    //how long it took to play the matches in nanoseconds
+    private long duration = 0;
+    
+    /**
+     * @param image The image the puzzles are made from, if null an image is created
+     * @param numPieces Number of pieces in each puzzle
+     * @param numPlayers Number of cpu puzzles in each match
+     * @param difficultyIndex The cpu difficulty
+     * @param gameTypeIndex Race or time attack
+     * @param seed The same seed plays the same matches
+     */
+    public Simulation(final Image image, final int numPieces, final int numPlayers, final int difficultyIndex, final int gameTypeIndex, final long seed)
+    {
+        this.puzzles = new Puzzles(seed);
+        this.image = (image != null) ? image : createImage(Shared.WINDOW_WIDTH, Shared.WINDOW_HEIGHT);
+        this.numPieces = numPieces;
+        this.numPlayers = numPlayers;
+        this.difficultyIndex = difficultyIndex;
+        this.gameTypeIndex = gameTypeIndex;
+    }
+    
+    /**
+     * Create an image to make the puzzles from, the picture doesn't matter to the cpu
+     */
+    private static Image createImage(final int width, final int height)
+    {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+        g2d.fillRect(0, 0, width, height);
+        g2d.dispose();
+        return image;
+    }
+    
+    /**
+     * Play the given number of matches
+     * @param total Number of matches
+     * @throws Exception 
+     */
+    public void run(final int total) throws Exception
+    {
+        final Rectangle screen = new Rectangle(0, 0, Shared.WINDOW_WIDTH, Shared.WINDOW_HEIGHT);
+        final Mouse mouse = new Mouse();
+        
+        final long start = System.nanoTime();
+        
+        for (int match=0; match < total; match++)
+        {
+            puzzles.reset(image, screen, TIME_DEDUCTION, mouse, numPieces, numPlayers, false, difficultyIndex, gameTypeIndex, Cutter.PuzzleCut.Traditional.ordinal());
+            
+            final List<Puzzle> collection = puzzles.getPuzzles();
+            
+            //the time passed when each puzzle started and finished, -1 if it hasn't yet
+            final long[] started  = new long[collection.size()];
+            final long[] finished = new long[collection.size()];
+            Arrays.fill(started, -1);
+            Arrays.fill(finished, -1);
+            
+            long time = 0;
+            
+            while (!puzzles.isEveryPuzzleFinished() && time < MAX_TIME)
+            {
+                puzzles.update();
+                time += TIME_DEDUCTION;
+                
+                for (int i=0; i < collection.size(); i++)
+                {
+                    //the game timer starts once the pieces are scrambled
+                    if (started[i] < 0 && collection.get(i).isScramblingComplete())
+                        started[i] = time;
+                    
+                    if (finished[i] < 0 && collection.get(i).hasGameOver())
+                        finished[i] = time;
+                }
+            }
+            
+            for (int i=0; i < collection.size(); i++)
+            {
+                if (finished[i] < 0 || started[i] < 0)
+                {
+                    incomplete++;
+                }
+                else
+                {
+                    add(finished[i] - started[i]);
+                }
+            }
+            
+            matches++;
+        }
+        
+        duration += System.nanoTime() - start;
+    }
+    
+    private void add(final long time)
+    {
+        if (count == times.length)
+            times = Arrays.copyOf(times, Math.max(16, times.length * 2));
+        
+        times[count++] = time;
+    }
+    
+    /**
+     * Get the completion time at the given percentile
+     * @param percentile 0 - 100
+     * @return long The time in nanoseconds, 0 if no puzzles have completed
+     */
+    public long getPercentile(final double percentile)
+    {
+        if (count == 0)
+            return 0;
+        
+        final long[] sorted = Arrays.copyOf(times, count);
+        Arrays.sort(sorted);
+        
+        //nearest rank
+        final int rank = (int)Math.ceil((percentile / 100.0) * count);
+        
+        return sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+    }
+    
+    /**
+     * Get the average completion time
+     * @return long The time in nanoseconds, 0 if no puzzles have completed
+     */
+    public long getAverage()
+    {
+        if (count == 0)
+            return 0;
+        
+        double total = 0;
+        
+        for (int i=0; i < count; i++)
+        {
+            total += times[i];
+        }
+        
+        return (long)(total / count);
+    }
+    
+    private static String toSeconds(final long nanoSeconds)
+    {
+        return String.format("%.1fs", nanoSeconds / 1000000000.0);
+    }
+    
+    /**
+     * Describe the distribution of the completion times
+     * @return String
+     */
+    public String getReport()
+    {
+        final StringBuilder report = new StringBuilder();
+        
+        report.append(ArtificialIntelligence.Difficulty.values()[difficultyIndex]);
+        report.append(", ").append(numPieces).append(" pieces, ").append(numPlayers).append(" players, ");
+        report.append((gameTypeIndex == 0) ? "race" : "time attack").append(System.lineSeparator());
+        report.append(matches).append(" matches, ").append(count).append(" puzzles completed, ").append(incomplete).append(" incomplete");
+        report.append(" (").append(String.format("%.2f", duration / 1000000000.0)).append("s)").append(System.lineSeparator());
+        report.append("completion time: min ").append(toSeconds(getPercentile(0)));
+        report.append(", p10 ").append(toSeconds(getPercentile(10)));
+        report.append(", p50 ").append(toSeconds(getPercentile(50)));
+        report.append(", p90 ").append(toSeconds(getPercentile(90)));
+        report.append(", p99 ").append(toSeconds(getPercentile(99)));
+        report.append(", max ").append(toSeconds(getPercentile(100)));
+        report.append(", mean ").append(toSeconds(getAverage()));
+        
+        return report.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.gamesbykevin.puzzle2.main;
+
+import com.gamesbykevin.puzzle2.objects.PuzzleSnapshot;
+
+import java.awt.Point;
+
+/**
+ * What the game looks like at the end of an update. The update thread 
+ * publishes a snapshot after updating and the render thread draws the 
+ * latest snapshot, a snapshot is never changed while it is retained.
+ * @author GOD
+ */
+public final class Snapshot
+{
+    //snapshot of every puzzle, null if the game isn't being played (loading or menu)
+    private final PuzzleSnapshot[] puzzles;
+    
+    //the countdown to the next puzzle, null if the puzzles aren't finished
+    private final String countdown;
+    
+    //location of the mouse, null if the mouse isn't drawn
+    private final Point mouse;
+    
+    //is the mouse being dragged
+    private final boolean mouseDragged;
+    
+    public Snapshot(final PuzzleSnapshot[] puzzles, final String countdown, final Point mouse, final boolean mouseDragged)
+    {
+        this.puzzles = puzzles;
+        this.countdown = countdown;
+        this.mouse = mouse;
+        this.mouseDragged = mouseDragged;
+    }
+    
+    /**
+     * Does the snapshot look the same as the other snapshot.
+     * A snapshot without puzzles only matches itself because the engine is drawn directly,
+     * the engine returns the same one until the loading screen or the menu changes.
+     * @param other
+     * @return boolean
+     */
+    public boolean isMatch(final Snapshot other)
+    {
+        return (other == this || (other != null && isMatch(other.puzzles, other.countdown, other.mouse, other.mouseDragged)));
+    }
+    
+    /**
+     * Does the snapshot look the same as a snapshot created with the given values.
+     * A snapshot without puzzles never matches because the engine is drawn directly.
+     * @return boolean
+     */
+    public boolean isMatch(final PuzzleSnapshot[] puzzles, final String countdown, final Point mouse, final boolean mouseDragged)
+    {
+        if (this.puzzles == null || puzzles == null || this.puzzles.length != puzzles.length)
+            return false;
+
+        //the puzzle snapshots are re-used when the puzzle hasn't changed
+        for (int i=0; i < puzzles.length; i++)
+        {
+            if (this.puzzles[i] != puzzles[i])
+                return false;
+        }
+
+        if (this.countdown == null ? countdown != null : !this.countdown.equals(countdown))
+            return false;
+
+        if (this.mouse == null ? mouse != null : !this.mouse.equals(mouse))
+            return false;
+
+        return (this.mouseDragged == mouseDragged);
+    }
+
+    /**
+     * Is the game being played, if not the engine has to be drawn while it isn't being updated
+     * @return boolean
+     */
+    public boolean hasPuzzles()
+    {
+        return (puzzles != null);
+    }
+    
+    /**
+     * The snapshot has been published, the puzzle snapshots won't change until it is released
+     */
+    public void retain()
+    {
+        if (puzzles == null)
+            return;
+        
+        for (PuzzleSnapshot puzzle : puzzles)
+        {
+            if (puzzle != null)
+                puzzle.retain();
+        }
+    }
+    
+    /**
+     * The snapshot has been drawn or replaced before it was drawn
+     */
+    public void release()
+    {
+        if (puzzles == null)
+            return;
+        
+        for (PuzzleSnapshot puzzle : puzzles)
+        {
+            if (puzzle != null)
+                puzzle.release();
+        }
+    }
+    
+    public PuzzleSnapshot[] getPuzzles()
+    {
+        return puzzles;
+    }
+    
+    public String getCountdown()
+    {
+        return countdown;
+    }
+    
+    public Point getMouse()
+    {
+        return mouse;
+    }
+    
+    public boolean isMouseDragged()
+    {
+        return mouseDragged;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,284 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.puzzle2.shared.DirtyRegion;
+
+/**
+ * The state of every puzzle piece in a puzzle stored in arrays by piece id.
+ * Moving, scrambling and animating the pieces only updates the arrays so no
+ * objects are created, each Piece is a view of its id in the board.
+ * @author GOD
+ */
+public final class Board
+{
+    //location of each piece
+    private final int[] x, y;
+    
+    //location of each piece before it started moving
+    private final int[] originalX, originalY;
+    
+    //the col, row of each piece in the finished puzzle
+    private final int[] col, row;
+    
+    //the col, row each piece is placed at when scrambled
+    private final int[] startCol, startRow;
+    
+    //which sides have a male connector, uses the same bits as the cut sheet
+    private final byte[] tabs;
+    
+    //every piece by id
+    private final Piece[] pieces;
+    
+    //the pieces that have been connected together
+    private final Clusters clusters;
+    
+    //dimensions of each piece including the extra width/height and without
+    private final int width, height, originalWidth, originalHeight;
+    
+    //grid of pieces we need to keep updated when a piece moves
+    private PieceGrid grid;
+    
+    //the area covered by the pieces that have changed since it was last checked
+    private int damageX1, damageY1, damageX2, damageY2;
+    
+    //have any pieces changed since it was last checked
+    private boolean damaged = false;
+    
+    //increased every time a piece moves
+    private int version = 0;
+    
+    /**
+     * Create a piece for every col, row of the sheet placed where it is in the original image
+     * @param sheet The sheet the pieces are cut from
+     */
+    public Board(final CutSheet sheet)
+    {
+        final int count = sheet.getCols() * sheet.getRows();
+        
+        this.x         = new int[count];
+        this.y         = new int[count];
+        this.originalX = new int[count];
+        this.originalY = new int[count];
+        this.col       = new int[count];
+        this.row       = new int[count];
+        this.startCol  = new int[count];
+        this.startRow  = new int[count];
+        this.tabs      = new byte[count];
+        this.pieces    = new Piece[count];
+        
+        this.width  = sheet.getPieceWidth();
+        this.height = sheet.getPieceHeight();
+        this.originalWidth  = sheet.getOriginalWidth();
+        this.originalHeight = sheet.getOriginalHeight();
+        
+        for (int col=0; col < sheet.getCols(); col++)
+        {
+            for (int row=0; row < sheet.getRows(); row++)
+            {
+                final int id = sheet.getIndex(col, row);
+                
+                this.x[id]   = sheet.getPieceArea(col, row).x;
+                this.y[id]   = sheet.getPieceArea(col, row).y;
+                this.col[id] = col;
+                this.row[id] = row;
+                
+                //the tab orientation comes from the sheet so the cut images match
+                if (sheet.hasNorthMale(col, row))
+                    tabs[id] |= CutSheet.NORTH_MALE;
+                if (sheet.hasSouthMale(col, row))
+                    tabs[id] |= CutSheet.SOUTH_MALE;
+                if (sheet.hasEastMale(col, row))
+                    tabs[id] |= CutSheet.EAST_MALE;
+                if (sheet.hasWestMale(col, row))
+                    tabs[id] |= CutSheet.WEST_MALE;
+                
+                pieces[id] = new Piece(this, id);
+            }
+        }
+        
+        this.clusters = new Clusters(pieces);
+    }
+    
+    public Piece getPiece(final int id)
+    {
+        return pieces[id];
+    }
+    
+    public int getCount()
+    {
+        return pieces.length;
+    }
+    
+    public Clusters getClusters()
+    {
+        return clusters;
+    }
+    
+    /**
+     * Set the grid that needs to be updated when a piece moves
+     * @param grid
+     */
+    public void setPieceGrid(final PieceGrid grid)
+    {
+        this.grid = grid;
+    }
+    
+    public int getX(final int id)
+    {
+        return x[id];
+    }
+    
+    public int getY(final int id)
+    {
+        return y[id];
+    }
+    
+    /**
+     * Set the location of the piece and keep the grid updated
+     * @param id
+     * @param x
+     * @param y
+     */
+    public void setLocation(final int id, final int x, final int y)
+    {
+        if (grid != null)
+            grid.update(pieces[id], x, y);
+        
+        //the area the piece was and the area the piece is now need to be drawn
+        addDamage(id);
+        
+        this.x[id] = x;
+        this.y[id] = y;
+        
+        addDamage(id);
+        
+        version++;
+    }
+    
+    /**
+     * Get the version of the piece locations, this changes every time a piece moves
+     * @return int
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+    
+    /**
+     * Copy the location of every piece to the given arrays
+     * @param x
+     * @param y 
+     */
+    public void copyLocations(final int[] x, final int[] y)
+    {
+        System.arraycopy(this.x, 0, x, 0, this.x.length);
+        System.arraycopy(this.y, 0, y, 0, this.y.length);
+    }
+    
+    /**
+     * Mark the area of the piece as changed so it will be drawn again
+     * @param id
+     */
+    public void addDamage(final int id)
+    {
+        if (!damaged)
+        {
+            damageX1 = x[id];
+            damageY1 = y[id];
+            damageX2 = x[id] + width;
+            damageY2 = y[id] + height;
+            damaged = true;
+        }
+        else
+        {
+            damageX1 = Math.min(damageX1, x[id]);
+            damageY1 = Math.min(damageY1, y[id]);
+            damageX2 = Math.max(damageX2, x[id] + width);
+            damageY2 = Math.max(damageY2, y[id] + height);
+        }
+    }
+    
+    /**
+     * Add the area of the pieces that have changed to the region and start over
+     * @param region
+     */
+    public void getDamage(final DirtyRegion region)
+    {
+        if (damaged)
+            region.add(damageX1, damageY1, damageX2 - damageX1, damageY2 - damageY1);
+        
+        damaged = false;
+    }
+    
+    public int getOriginalX(final int id)
+    {
+        return originalX[id];
+    }
+    
+    public int getOriginalY(final int id)
+    {
+        return originalY[id];
+    }
+    
+    public void setOriginalLocation(final int id, final int x, final int y)
+    {
+        this.originalX[id] = x;
+        this.originalY[id] = y;
+    }
+    
+    public int getCol(final int id)
+    {
+        return col[id];
+    }
+    
+    public int getRow(final int id)
+    {
+        return row[id];
+    }
+    
+    public int getStartCol(final int id)
+    {
+        return startCol[id];
+    }
+    
+    public int getStartRow(final int id)
+    {
+        return startRow[id];
+    }
+    
+    public void setStartCell(final int id, final int col, final int row)
+    {
+        this.startCol[id] = col;
+        this.startRow[id] = row;
+    }
+    
+    /**
+     * Does the piece have a male connector on the given side
+     * @param id
+     * @param side One of the male bits from the cut sheet
+     * @return boolean
+     */
+    public boolean hasMale(final int id, final int side)
+    {
+        return ((tabs[id] & side) != 0);
+    }
+    
+    public int getWidth()
+    {
+        return width;
+    }
+    
+    public int getHeight()
+    {
+        return height;
+    }
+    
+    public int getOriginalWidth()
+    {
+        return originalWidth;
+    }
+    
+    public int getOriginalHeight()
+    {
+        return originalHeight;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.gamesbykevin.puzzle2.objects;
+
+/**
+ * The groups of puzzle pieces that have been connected together.
+ * Each piece has an id and the groups are kept as a disjoint set so
+ * finding the group of a piece and merging 2 groups take near constant time.
+ * The pieces of each group are also linked in a circle so we can
+ * loop through a group without keeping a list of the pieces.
+ * @author GOD
+ */
+public final class Clusters
+{
+    //the pieces by id
+    private final Piece[] pieces;
+    
+    //parent of each id, an id that is its own parent is the root of the group
+    private final int[] parent;
+    
+    //number of pieces in the group, only valid for the root of the group
+    private final int[] size;
+    
+    //the id of the piece that represents the group, only valid for the root of the group
+    private final int[] leader;
+    
+    //the id of the next piece in the same group
+    private final int[] next;
+    
+    //number of groups remaining
+    private int count;
+    
+    /**
+     * Create the groups where every piece starts in its own group
+     * @param pieces The pieces by id
+     */
+    public Clusters(final Piece[] pieces)
+    {
+        this.pieces = pieces;
+        this.parent = new int[pieces.length];
+        this.size   = new int[pieces.length];
+        this.leader = new int[pieces.length];
+        this.next   = new int[pieces.length];
+        this.count  = pieces.length;
+        
+        for (int id=0; id < pieces.length; id++)
+        {
+            parent[id] = id;
+            size[id]   = 1;
+            leader[id] = id;
+            next[id]   = id;
+        }
+    }
+    
+    /**
+     * Get the root of the group the id is in
+     * @param id
+     * @return int
+     */
+    private int find(int id)
+    {
+        while (parent[id] != id)
+        {
+            //point to the grandparent so the path gets shorter each time
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        
+        return id;
+    }
+    
+    /**
+     * Get the piece that represents the group the given piece is in
+     * @param id
+     * @return Piece
+     */
+    public Piece getLeader(final int id)
+    {
+        return pieces[leader[find(id)]];
+    }
+    
+    /**
+     * Get the next piece in the same group,
+     * when we get back to the piece we started with we have looped through the group
+     * @param id
+     * @return Piece
+     */
+    public Piece getNext(final int id)
+    {
+        return pieces[next[id]];
+    }
+    
+    /**
+     * Get the number of pieces in the group the id is in
+     * @param id
+     * @return int
+     */
+    public int getSize(final int id)
+    {
+        return size[find(id)];
+    }
+    
+    /**
+     * Are the 2 pieces in the same group
+     * @param id1
+     * @param id2
+     * @return boolean
+     */
+    public boolean isConnected(final int id1, final int id2)
+    {
+        return (find(id1) == find(id2));
+    }
+    
+    /**
+     * Get the number of groups remaining
+     * @return int
+     */
+    public int getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * Have all pieces been connected into 1 group
+     * @return boolean
+     */
+    public boolean isComplete()
+    {
+        return (count == 1);
+    }
+    
+    /**
+     * Merge the group of the second id into the group of the first id.
+     * The piece representing the first group will represent the merged group.
+     * @param id1
+     * @param id2
+     */
+    public void merge(final int id1, final int id2)
+    {
+        int root1 = find(id1);
+        int root2 = find(id2);
+        
+        if (root1 == root2)
+            return;
+        
+        final int newLeader = leader[root1];
+        
+        //the smaller group is added to the larger group
+        if (size[root1] < size[root2])
+        {
+            final int tmp = root1;
+            root1 = root2;
+            root2 = tmp;
+        }
+        
+        parent[root2] = root1;
+        size[root1] += size[root2];
+        leader[root1] = newLeader;
+        
+        //join the 2 circles of pieces
+        final int tmp = next[id1];
+        next[id1] = next[id2];
+        next[id2] = tmp;
+        
+        count--;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+/**
+ * A cut shape rasterized one time into a byte mask so it can
+ * be applied to the pixels of a puzzle piece with a simple array loop
+ * @author GOD
+ */
+public final class CutMask
+{
+    //location and dimensions of the mask relative to the puzzle piece
+    private final int x, y, width, height;
+    
+    //any byte that is not 0 is a pixel that will not be included in image
+    private final byte[] bits;
+    
+    private CutMask(final int x, final int y, final int width, final int height, final byte[] bits)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+    }
+    
+    /**
+     * Rasterize the shape into a mask. Each pixel is
+     * sampled at its top-left corner the same as Area.contains(x, y)
+     * @param shape The area that will be removed from the puzzle piece
+     * @return CutMask
+     */
+    public static CutMask create(final Shape shape)
+    {
+        final Rectangle bounds = shape.getBounds();
+        
+        //nothing to cut
+        if (bounds.width < 1 || bounds.height < 1)
+            return new CutMask(bounds.x, bounds.y, 0, 0, new byte[0]);
+        
+        BufferedImage raster = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = raster.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        
+        //shift half a pixel so the pixel centers land on the pixel corners
+        g.translate(-bounds.x + .5, -bounds.y + .5);
+        g.setColor(Color.WHITE);
+        g.fill(shape);
+        g.dispose();
+        
+        final byte[] bits = ((DataBufferByte)raster.getRaster().getDataBuffer()).getData();
+        
+        return new CutMask(bounds.x, bounds.y, bounds.width, bounds.height, bits);
+    }
+    
+    /**
+     * Remove the masked pixels from the ARGB pixel block by clearing the alpha
+     * @param pixels The pixels of the puzzle piece
+     * @param scanWidth The width of the puzzle piece
+     * @param scanHeight The height of the puzzle piece
+     */
+    public void apply(final int[] pixels, final int scanWidth, final int scanHeight)
+    {
+        //only check the part of the mask that is within the puzzle piece
+        final int startX = Math.max(0, x);
+        final int startY = Math.max(0, y);
+        final int endX   = Math.min(scanWidth,  x + width);
+        final int endY   = Math.min(scanHeight, y + height);
+        
+        for (int row = startY; row < endY; row++)
+        {
+            int maskIndex  = ((row - y) * width) + (startX - x);
+            int pixelIndex = (row * scanWidth) + startX;
+            
+            for (int col = startX; col < endX; col++, maskIndex++, pixelIndex++)
+            {
+                if (bits[maskIndex] != 0)
+                    pixels[pixelIndex] &= 0xffffff;
+            }
+        }
+    }
+}
\ No newline at end of file
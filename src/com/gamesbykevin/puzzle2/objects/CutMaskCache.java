@@ -0,0 +1,142 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.util.HashMap;
+
+/**
+ * Every puzzle piece on a board has the same dimensions so there are only 
+ * a few different shapes that are cut. Each shape is rasterized 
+ * the first time it is needed and the mask is re-used after that.
+ * @author GOD
+ */
+public final class CutMaskCache 
+{
+    //all of the masks created so far
+    private final HashMap<Key, CutMask> masks = new HashMap<>();
+    
+    //how many times a mask was found or had to be created
+    private long hits = 0, misses = 0;
+    
+    /**
+     * Get the mask for one side of a puzzle piece, creating it if it does not exist
+     * @param side The side of the puzzle piece
+     * @param male Does the side have a male connector
+     * @param width Width of the puzzle piece including the extra width
+     * @param height Height of the puzzle piece including the extra height
+     * @param extraW Extra width on each end of the puzzle piece
+     * @param extraH Extra height on each end of the puzzle piece
+     * @param puzzleCut The style of cut
+     * @return CutMask
+     */
+    public synchronized CutMask get(final Cutter.Side side, boolean male, final int width, final int height, final int extraW, final int extraH, final Cutter.PuzzleCut puzzleCut)
+    {
+        //only the sides of a traditional cut are different for male/female
+        if (puzzleCut != Cutter.PuzzleCut.Traditional || !isSide(side))
+            male = false;
+        
+        final Key key = new Key(side, male, width, height, extraW, extraH, puzzleCut);
+        
+        CutMask mask = masks.get(key);
+        
+        if (mask == null)
+        {
+            misses++;
+            mask = CutMask.create(Cutter.getCutArea(side, male, width, height, extraW, extraH, puzzleCut));
+            masks.put(key, mask);
+        }
+        else
+        {
+            hits++;
+        }
+        
+        return mask;
+    }
+    
+    private static boolean isSide(final Cutter.Side side)
+    {
+        return (side == Cutter.Side.North || side == Cutter.Side.South || side == Cutter.Side.East || side == Cutter.Side.West);
+    }
+    
+    /**
+     * How many times an existing mask was returned
+     * @return long
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+    
+    /**
+     * How many times a mask had to be created
+     * @return long
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+    
+    /**
+     * The number of different masks in the cache
+     * @return int
+     */
+    public synchronized int getSize()
+    {
+        return masks.size();
+    }
+    
+    /**
+     * Remove all masks and reset the counters
+     */
+    public synchronized void clear()
+    {
+        masks.clear();
+        hits = 0;
+        misses = 0;
+    }
+    
+    /**
+     * Everything that changes the shape of the mask
+     */
+    private static final class Key
+    {
+        private final Cutter.Side side;
+        private final boolean male;
+        private final int width, height, extraW, extraH;
+        private final Cutter.PuzzleCut puzzleCut;
+        
+        private Key(final Cutter.Side side, final boolean male, final int width, final int height, final int extraW, final int extraH, final Cutter.PuzzleCut puzzleCut)
+        {
+            this.side = side;
+            this.male = male;
+            this.width = width;
+            this.height = height;
+            this.extraW = extraW;
+            this.extraH = extraH;
+            this.puzzleCut = puzzleCut;
+        }
+        
+        @Override
+        public boolean equals(Object object)
+        {
+            if (!(object instanceof Key))
+                return false;
+            
+            Key key = (Key)object;
+            
+            return (side == key.side && male == key.male && width == key.width && height == key.height && 
+                    extraW == key.extraW && extraH == key.extraH && puzzleCut == key.puzzleCut);
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            int hash = side.hashCode();
+            hash = (31 * hash) + (male ? 1 : 0);
+            hash = (31 * hash) + width;
+            hash = (31 * hash) + height;
+            hash = (31 * hash) + extraW;
+            hash = (31 * hash) + extraH;
+            hash = (31 * hash) + puzzleCut.hashCode();
+            return hash;
+        }
+    }
+}
\ No newline at end of file
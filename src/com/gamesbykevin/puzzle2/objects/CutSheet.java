@@ -0,0 +1,631 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+import com.gamesbykevin.puzzle2.shared.Workers;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The image of every puzzle piece on a board. Boards that use the same
+ * image, number of rows/cols, puzzle cut and size share one sheet
+ * so the pieces are only cut once. Once a piece is cut it is never changed.
+ * @author GOD
+ */
+public final class CutSheet
+{
+    //the tab orientation of each puzzle piece stored as bits
+    public static final byte NORTH_MALE = 1;
+    public static final byte SOUTH_MALE = 2;
+    public static final byte EAST_MALE  = 4;
+    public static final byte WEST_MALE  = 8;
+    
+    //pack the puzzle pieces into a few large images instead of an image for each puzzle piece
+    public static final boolean ATLAS_ENABLED = true;
+    
+    //the max width and height of each atlas page
+    private static final int PAGE_SIZE = 2048;
+    
+    //the image before it was resized
+    private final Image source;
+    
+    //entire image before cut
+    private final BufferedImage image;
+    
+    //number of cols/rows for this picture puzzle
+    private final int rows, cols;
+    
+    //dimensions of each puzzle piece not including the extra width and height
+    private final int originalWidth, originalHeight;
+    
+    //this is the extra width and height on each puzzle piece
+    private final int extraW, extraH;
+    
+    private final Cutter.PuzzleCut puzzleCut;
+    
+    //which sides have a male connector for each puzzle piece
+    private final byte[] tabs;
+    
+    //the cut image for each puzzle piece if the atlas is not enabled
+    private final Image[] images;
+    
+    //the atlas pages every puzzle piece is cut into if the atlas is enabled
+    private final BufferedImage[] pages;
+    
+    //the number of puzzle pieces across and down on each atlas page
+    private final int pageCols, pageRows;
+    
+    //masks of the areas cut from each puzzle piece
+    private final CutMaskCache cutMaskCache;
+    
+    //the puzzle pieces being cut in the background
+    private List<Future<?>> cutting;
+    
+    //pixels of the entire image the puzzle pieces are cut from
+    private int[] pixels;
+    
+    //where the puzzle pieces are saved for the next launch, null if they are always cut
+    private final CutSheetFileCache fileCache;
+    
+    //held while the saved puzzle pieces are found so the game thread never waits on the file
+    private final Object fileLock = new Object();
+    
+    //has the file with the saved puzzle pieces been looked for
+    private boolean searched = false;
+    
+    //the hash of the image used to find the saved puzzle pieces, 0 if the pieces are always cut
+    private final long imageHash;
+    
+    //the saved puzzle pieces for this sheet, null if they weren't saved or they have been read
+    private CutSheetFileCache.Entry saved;
+    
+    //has every puzzle piece been cut and the sheet been checked for saving
+    private boolean complete = false;
+    
+    public CutSheet(final Image source, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut, final CutMaskCache cutMaskCache)
+    {
+        this(source, size, rows, cols, puzzleCut, cutMaskCache, new SplitRandom());
+    }
+    
+    /**
+     * @param random Decides the tab orientation so the same seed cuts the same pieces
+     */
+    public CutSheet(final Image source, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut, final CutMaskCache cutMaskCache, final SplitRandom random)
+    {
+        this(source, size, rows, cols, puzzleCut, cutMaskCache, new ScaledImageCache(), random);
+    }
+    
+    /**
+     * @param scaledImageCache The resized image is shared with other sheets of the same size
+     * @param random Decides the tab orientation so the same seed cuts the same pieces
+     */
+    public CutSheet(final Image source, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut, final CutMaskCache cutMaskCache, final ScaledImageCache scaledImageCache, final SplitRandom random)
+    {
+        this(source, size, rows, cols, puzzleCut, cutMaskCache, scaledImageCache, null, random);
+    }
+    
+    /**
+     * @param scaledImageCache The resized image is shared with other sheets of the same size
+     * @param fileCache The puzzle pieces saved by an earlier launch, null if the pieces are always cut
+     * @param random Decides the tab orientation so the same seed cuts the same pieces, 
+     *               not used when the pieces are saved since then the image decides the tabs
+     */
+    public CutSheet(final Image source, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut, final CutMaskCache cutMaskCache, final ScaledImageCache scaledImageCache, final CutSheetFileCache fileCache, final SplitRandom random)
+    {
+        this.source = source;
+        this.rows = rows;
+        this.cols = cols;
+        this.puzzleCut = puzzleCut;
+        this.cutMaskCache = cutMaskCache;
+        
+        //an ARGB image so we can access the pixels directly, resized if needed
+        this.image = scaledImageCache.get(source, size.width, size.height);
+        
+        //width of each puzzle piece
+        this.originalWidth  = (int)(this.image.getWidth() / cols);
+        
+        //height of each puzzle piece
+        this.originalHeight = (int)(this.image.getHeight() / rows);
+        
+        //calculate extra width and height
+        this.extraW = (int)(originalWidth  * Puzzle.EXTRA_RATIO);
+        this.extraH = (int)(originalHeight * Puzzle.EXTRA_RATIO);
+        
+        this.fileCache = fileCache;
+        
+        //the saved pieces are found by the image, so the tabs are also decided by the image or the pieces would never match
+        this.imageHash = (fileCache != null) ? CutSheetFileCache.hash(getPixels(), image.getWidth(), image.getHeight()) : 0;
+        
+        final SplitRandom tabRandom = (fileCache != null) ? new SplitRandom(imageHash) : random;
+        
+        this.tabs = new byte[rows * cols];
+        
+        for (int col=0; col < cols; col++)
+        {
+            for (int row=0; row < rows; row++)
+            {
+                byte tab = 0;
+                
+                //the piece to the north was already created so connect the opposite way
+                if (row > 0 && !hasSouthMale(col, row - 1))
+                    tab |= NORTH_MALE;
+                
+                //if not the bottom row
+                if (row < rows - 1 && tabRandom.nextBoolean())
+                    tab |= SOUTH_MALE;
+                
+                //if not the last col
+                if (col < cols - 1 && tabRandom.nextBoolean())
+                    tab |= EAST_MALE;
+                
+                //the piece to the west was already created so connect the opposite way
+                if (col > 0 && !hasEastMale(col - 1, row))
+                    tab |= WEST_MALE;
+                
+                tabs[getIndex(col, row)] = tab;
+            }
+        }
+        
+        //the saved pieces are premultiplied so they are copied without changing them, the pieces that are cut are premultiplied to match
+        final int type = (fileCache != null) ? BufferedImage.TYPE_INT_ARGB_PRE : BufferedImage.TYPE_INT_ARGB;
+        
+        if (ATLAS_ENABLED)
+        {
+            //the pieces are all the same size so place them in a grid on each page
+            final int total = rows * cols;
+            
+            this.pageCols = Math.max(1, Math.min(total, PAGE_SIZE / getPieceWidth()));
+            this.pageRows = Math.max(1, Math.min((total + pageCols - 1) / pageCols, PAGE_SIZE / getPieceHeight()));
+            
+            final int perPage = pageCols * pageRows;
+            
+            this.pages = new BufferedImage[(total + perPage - 1) / perPage];
+            
+            for (int i=0; i < pages.length; i++)
+            {
+                //the last page only needs to be big enough for the remaining pieces
+                final int remaining = Math.min(perPage, total - (i * perPage));
+                final int down = (remaining + pageCols - 1) / pageCols;
+                
+                pages[i] = new BufferedImage(pageCols * getPieceWidth(), down * getPieceHeight(), type);
+            }
+            
+            this.images = null;
+        }
+        else
+        {
+            this.pageCols = 0;
+            this.pageRows = 0;
+            this.pages = null;
+            this.images = new Image[rows * cols];
+        }
+    }
+    
+    /**
+     * Get the size the image will be for the given window.
+     * If the image is bigger than the window it will be 75% of the window.
+     * @param image
+     * @param screen
+     * @return Dimension
+     */
+    public static Dimension getSize(final Image image, final Rectangle screen)
+    {
+        //if image is bigger than the window resize image
+        if (image.getWidth(null) >= screen.width || image.getHeight(null) >= screen.height)
+        {
+            //assume puzzle image has same width and height
+            int maxDim = screen.width;
+            
+            if (screen.width > screen.height)
+                maxDim = screen.height;
+            
+            //puzzle image will be 75% of screen size
+            int bothDim = (int)(maxDim * .75);
+            
+            return new Dimension(bothDim, bothDim);
+        }
+        else
+        {
+            return new Dimension(image.getWidth(null), image.getHeight(null));
+        }
+    }
+    
+    /**
+     * Can this sheet be used for a puzzle with the given settings
+     * @return boolean
+     */
+    public boolean isMatch(final Image source, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut)
+    {
+        return (this.source == source && image.getWidth() == size.width && image.getHeight() == size.height &&
+                this.rows == rows && this.cols == cols && this.puzzleCut == puzzleCut);
+    }
+    
+    /**
+     * The index of the puzzle piece in this sheet
+     * @param col
+     * @param row
+     * @return int
+     */
+    public int getIndex(final int col, final int row)
+    {
+        return (col * rows) + row;
+    }
+    
+    public BufferedImage getImage()
+    {
+        return image;
+    }
+    
+    public Cutter.PuzzleCut getPuzzleCut()
+    {
+        return puzzleCut;
+    }
+    
+    public CutMaskCache getCutMaskCache()
+    {
+        return cutMaskCache;
+    }
+    
+    public int getCols()
+    {
+        return cols;
+    }
+    
+    public int getRows()
+    {
+        return rows;
+    }
+    
+    public int getExtraWidth()
+    {
+        return extraW;
+    }
+    
+    public int getExtraHeight()
+    {
+        return extraH;
+    }
+    
+    public int getOriginalWidth()
+    {
+        return originalWidth;
+    }
+    
+    public int getOriginalHeight()
+    {
+        return originalHeight;
+    }
+    
+    /**
+     * Width of each puzzle piece including the extra width
+     * @return int
+     */
+    public int getPieceWidth()
+    {
+        return originalWidth + (extraW * 2);
+    }
+    
+    /**
+     * Height of each puzzle piece including the extra height
+     * @return int
+     */
+    public int getPieceHeight()
+    {
+        return originalHeight + (extraH * 2);
+    }
+    
+    /**
+     * The area of the image the puzzle piece is cut from
+     * @param col
+     * @param row
+     * @return Rectangle
+     */
+    public Rectangle getPieceArea(final int col, final int row)
+    {
+        return new Rectangle((col * originalWidth) - extraW, (row * originalHeight) - extraH, getPieceWidth(), getPieceHeight());
+    }
+    
+    public boolean hasNorthMale(final int col, final int row)
+    {
+        return ((tabs[getIndex(col, row)] & NORTH_MALE) != 0);
+    }
+    
+    public boolean hasSouthMale(final int col, final int row)
+    {
+        return ((tabs[getIndex(col, row)] & SOUTH_MALE) != 0);
+    }
+    
+    public boolean hasEastMale(final int col, final int row)
+    {
+        return ((tabs[getIndex(col, row)] & EAST_MALE) != 0);
+    }
+    
+    public boolean hasWestMale(final int col, final int row)
+    {
+        return ((tabs[getIndex(col, row)] & WEST_MALE) != 0);
+    }
+    
+    /**
+     * Get the ARGB pixels of the entire puzzle image. This is the array 
+     * the image is stored in so nothing is copied, but this image is only 
+     * used for cutting so it doesn't matter that Java2D can no longer accelerate it.
+     * The image may be shared with other sheets so the pixels are never changed.
+     * @return int[]
+     */
+    public synchronized int[] getPixels()
+    {
+        if (pixels == null)
+            pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+        
+        return pixels;
+    }
+    
+    /**
+     * Submit every puzzle piece to be cut in the background.
+     * If the pieces are already being cut nothing will happen.
+     */
+    public void startCutting()
+    {
+        startCutting(Workers.getPool());
+    }
+    
+    /**
+     * Submit every puzzle piece to be cut by the given threads.
+     * If the pieces are already being cut nothing will happen.
+     * @param executor The threads the pieces are cut on
+     */
+    public synchronized void startCutting(final ExecutorService executor)
+    {
+        if (cutting != null)
+            return;
+        
+        //grab the pixels here so the background threads don't have to wait
+        getPixels();
+        
+        cutting = new ArrayList<>(rows * cols);
+        
+        for (int col=0; col < cols; col++)
+        {
+            for (int row=0; row < rows; row++)
+            {
+                final int index = getIndex(col, row);
+                final int pieceCol = col;
+                final int pieceRow = row;
+                
+                cutting.add(executor.submit(new Callable<Image>()
+                {
+                    @Override
+                    public Image call() throws Exception
+                    {
+                        //the first piece finds the saved pieces, the other pieces wait for it
+                        final CutSheetFileCache.Entry entry = findSaved();
+                        
+                        if (pages != null)
+                        {
+                            //each puzzle piece has its own area of the page so they can be cut at the same time
+                            final BufferedImage page = pages[getPage(index)];
+                            
+                            if (!readPiece(entry, index, page, getPageX(index), getPageY(index)))
+                                Cutter.cutPiece(CutSheet.this, pieceCol, pieceRow, page, getPageX(index), getPageY(index));
+                            
+                            return page;
+                        }
+                        else
+                        {
+                            if (fileCache == null)
+                            {
+                                images[index] = Cutter.createPiece(CutSheet.this, pieceCol, pieceRow);
+                                return images[index];
+                            }
+                            
+                            final BufferedImage image = new BufferedImage(getPieceWidth(), getPieceHeight(), BufferedImage.TYPE_INT_ARGB_PRE);
+                            
+                            if (!readPiece(entry, index, image, 0, 0))
+                                Cutter.cutPiece(CutSheet.this, pieceCol, pieceRow, image, 0, 0);
+                            
+                            images[index] = image;
+                            return images[index];
+                        }
+                    }
+                }));
+            }
+        }
+    }
+    
+    /**
+     * Find the pieces saved for this sheet the first time this is called. This is called by the
+     * threads cutting the pieces so the file is never read on the game thread.
+     * @return CutSheetFileCache.Entry The saved pieces, null if they weren't saved or the pieces are always cut
+     */
+    private CutSheetFileCache.Entry findSaved()
+    {
+        if (fileCache == null)
+            return null;
+        
+        synchronized (fileLock)
+        {
+            if (!searched)
+            {
+                searched = true;
+                saved = fileCache.find(imageHash, this);
+            }
+            
+            return saved;
+        }
+    }
+    
+    /**
+     * Copy the saved puzzle piece into the image
+     * @param entry The saved puzzle pieces, null if they weren't saved
+     * @param index The index of the puzzle piece
+     * @param destination The image the puzzle piece will be written to
+     * @param x x-coordinate of the puzzle piece in the destination
+     * @param y y-coordinate of the puzzle piece in the destination
+     * @return boolean false if the puzzle piece wasn't saved or is corrupt, then it has to be cut
+     */
+    private boolean readPiece(final CutSheetFileCache.Entry entry, final int index, final BufferedImage destination, final int x, final int y)
+    {
+        if (entry == null)
+            return false;
+        
+        final int[] pixels = new int[getPieceWidth() * getPieceHeight()];
+        
+        if (!entry.readPiece(index, pixels))
+            return false;
+        
+        destination.getRaster().setDataElements(x, y, getPieceWidth(), getPieceHeight(), pixels);
+        return true;
+    }
+    
+    /**
+     * Copy the premultiplied ARGB pixels of a puzzle piece that has been cut
+     * @param index The index of the puzzle piece
+     * @param pixels Where the pixels are copied to
+     */
+    void getPiecePixels(final int index, final int[] pixels)
+    {
+        final BufferedImage image = (pages != null) ? pages[getPage(index)] : (BufferedImage)images[index];
+        final int x = (pages != null) ? getPageX(index) : 0;
+        final int y = (pages != null) ? getPageY(index) : 0;
+        
+        image.getRaster().getDataElements(x, y, getPieceWidth(), getPieceHeight(), pixels);
+        
+        if (!image.isAlphaPremultiplied())
+            Cutter.premultiply(pixels, getPieceWidth() * getPieceHeight());
+    }
+    
+    /**
+     * The tab orientation of the puzzle piece
+     * @param index The index of the puzzle piece
+     * @return byte
+     */
+    byte getTab(final int index)
+    {
+        return tabs[index];
+    }
+    
+    /**
+     * Stop cutting any puzzle pieces that have not been cut yet
+     */
+    public synchronized void cancelCutting()
+    {
+        if (cutting == null)
+            return;
+        
+        for (Future<?> future : cutting)
+        {
+            future.cancel(false);
+        }
+    }
+    
+    /**
+     * Count the puzzle pieces in order that have finished cutting, starting at the given count
+     * @param count The number of puzzle pieces already known to be finished
+     * @return int
+     * @throws Exception If cutting a puzzle piece failed
+     */
+    public synchronized int getCutCount(int count) throws Exception
+    {
+        if (cutting == null)
+            return 0;
+        
+        while (count < cutting.size() && cutting.get(count).isDone())
+        {
+            //if the cut failed the exception will be thrown here
+            cutting.get(count).get();
+            count++;
+        }
+        
+        if (count == cutting.size() && !complete && fileCache != null)
+        {
+            complete = true;
+            
+            //every piece has been cut so the file has already been looked for
+            synchronized (fileLock)
+            {
+                //save the pieces for the next launch unless they were read from a file that is fine
+                if (saved == null || saved.isCorrupt())
+                    fileCache.saveLater(imageHash, this);
+                
+                //the saved pieces are no longer needed
+                saved = null;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Which atlas page is the puzzle piece on
+     * @param index
+     * @return int
+     */
+    private int getPage(final int index)
+    {
+        return index / (pageCols * pageRows);
+    }
+    
+    /**
+     * The x-coordinate of the puzzle piece on its atlas page
+     * @param index
+     * @return int
+     */
+    private int getPageX(final int index)
+    {
+        return ((index % (pageCols * pageRows)) % pageCols) * getPieceWidth();
+    }
+    
+    /**
+     * The y-coordinate of the puzzle piece on its atlas page
+     * @param index
+     * @return int
+     */
+    private int getPageY(final int index)
+    {
+        return ((index % (pageCols * pageRows)) / pageCols) * getPieceHeight();
+    }
+    
+    /**
+     * The number of images the puzzle pieces are stored in
+     * @return int
+     */
+    public int getImageCount()
+    {
+        return (pages != null) ? pages.length : images.length;
+    }
+    
+    /**
+     * Draw the cut image of the puzzle piece. If the atlas is 
+     * enabled only the area of the page with the puzzle piece is drawn.
+     * @param g Graphics object
+     * @param index The index of the puzzle piece
+     * @param x x-coordinate where the puzzle piece will be drawn
+     * @param y y-coordinate where the puzzle piece will be drawn
+     * @return Graphics
+     */
+    public Graphics drawPiece(final Graphics g, final int index, final int x, final int y)
+    {
+        if (pages != null)
+        {
+            final int sx = getPageX(index);
+            final int sy = getPageY(index);
+            
+            g.drawImage(pages[getPage(index)], x, y, x + getPieceWidth(), y + getPieceHeight(), sx, sy, sx + getPieceWidth(), sy + getPieceHeight(), null);
+        }
+        else
+        {
+            g.drawImage(images[index], x, y, null);
+        }
+        
+        return g;
+    }
+}
\ No newline at end of file
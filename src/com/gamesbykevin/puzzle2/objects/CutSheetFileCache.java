@@ -0,0 +1,580 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.puzzle2.shared.Workers;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The cut puzzle pieces saved to disk so the next launch doesn't have to cut them again.
+ * Each sheet is saved in its own file named after the image, the number of rows/cols,
+ * the size of each puzzle piece and the puzzle cut, the tab orientation is decided by the image
+ * so it is the same every launch. The file is memory mapped and each puzzle piece is copied
+ * straight from the mapping, the file stays mapped until the sheet has read every piece and
+ * the mapping is collected. On some systems a mapped file can't be replaced or deleted,
+ * then saving counts a failure and eviction skips the file until the next time.
+ * When the files use more space than allowed the file used the longest time ago is deleted first.
+ *
+ * The file is big endian:
+ *   header - magic, version, image hash, image width/height, rows, cols,
+ *            piece width/height, puzzle cut and the checksum of the header, tabs and index
+ *   tabs   - the tab orientation of each puzzle piece, padded to 4 bytes
+ *   index  - the offset and checksum of each puzzle piece
+ *   pieces - the premultiplied ARGB pixels of each puzzle piece
+ * @author GOD
+ */
+public final class CutSheetFileCache
+{
+    //do we save the cut puzzle pieces for the next launch
+    public static boolean ENABLED = true;
+    
+    //the most bytes the files can use by default
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    
+    //the first bytes of every file, "PZCS"
+    private static final int MAGIC = 0x505A4353;
+    
+    //change this when the format changes so the old files are cut again
+    private static final int VERSION = 1;
+    
+    //the bytes before the tabs
+    private static final int HEADER_SIZE = 48;
+    
+    //where the checksum of the header is
+    private static final int HEADER_CHECKSUM = 44;
+    
+    //the bytes for each puzzle piece in the index, the offset and checksum
+    private static final int INDEX_SIZE = 8;
+    
+    //the bytes of a puzzle piece checked at a time
+    private static final int CHECKSUM_BLOCK = 4096;
+    
+    private static final String EXTENSION = ".sheet";
+    
+    //the folder the files are saved in
+    private final File directory;
+    
+    //the most bytes the files can use
+    private final long maxBytes;
+    
+    //how many times the pieces were found or had to be cut
+    private long hits = 0, misses = 0;
+    
+    //how many times the pieces could not be saved
+    private long failures = 0;
+    
+    /**
+     * @param directory The folder the files are saved in, it is created when the first file is saved
+     * @param maxBytes The most bytes the files can use
+     */
+    public CutSheetFileCache(final File directory, final long maxBytes)
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Create the cache in the home folder of the user
+     * @return CutSheetFileCache The cache, null if it is disabled or files can't be saved
+     */
+    public static CutSheetFileCache createDefault()
+    {
+        if (!ENABLED)
+            return null;
+        
+        try
+        {
+            return new CutSheetFileCache(new File(new File(System.getProperty("user.home"), ".puzzle2"), "cutsheets"), DEFAULT_MAX_BYTES);
+        }
+        catch (SecurityException e)
+        {
+            //an applet isn't allowed to use files
+            return null;
+        }
+    }
+    
+    /**
+     * Hash the pixels of the image the pieces are cut from
+     * @param pixels
+     * @param width
+     * @param height
+     * @return long
+     */
+    public static long hash(final int[] pixels, final int width, final int height)
+    {
+        //64 bit FNV-1a of each pixel
+        long hash = 0xcbf29ce484222325L;
+        
+        hash = (hash ^ width)  * 0x100000001b3L;
+        hash = (hash ^ height) * 0x100000001b3L;
+        
+        for (int i=0; i < width * height; i++)
+        {
+            hash = (hash ^ pixels[i]) * 0x100000001b3L;
+        }
+        
+        return hash;
+    }
+    
+    /**
+     * The file the sheet is saved in
+     */
+    private File getFile(final long imageHash, final CutSheet sheet)
+    {
+        return new File(directory, String.format("%016x-%dx%d-%dx%d-%s%s", imageHash, sheet.getCols(), sheet.getRows(), sheet.getPieceWidth(), sheet.getPieceHeight(), sheet.getPuzzleCut().name(), EXTENSION));
+    }
+    
+    /**
+     * Find the pieces saved for the sheet. A file that is corrupt will be deleted.
+     * @param imageHash The hash of the image the pieces are cut from
+     * @param sheet The sheet, only the settings are used
+     * @return Entry The saved pieces, null if they weren't saved or the file is corrupt
+     */
+    public Entry find(final long imageHash, final CutSheet sheet)
+    {
+        final File file = getFile(imageHash, sheet);
+        
+        Entry entry = null;
+        
+        try
+        {
+            if (file.isFile())
+            {
+                //the mapping stays valid after the file is closed
+                try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel())
+                {
+                    entry = Entry.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), imageHash, sheet);
+                }
+                
+                if (entry == null)
+                {
+                    //if the file can't be deleted it is replaced when the pieces are saved again
+                    file.delete();
+                }
+                else
+                {
+                    //the time the file was last used for the next eviction
+                    file.setLastModified(System.currentTimeMillis());
+                }
+            }
+        }
+        catch (IOException | SecurityException e)
+        {
+            entry = null;
+        }
+        
+        synchronized (this)
+        {
+            if (entry != null)
+                hits++;
+            else
+                misses++;
+        }
+        
+        return entry;
+    }
+    
+    /**
+     * Save the pieces of the sheet on the background threads once every piece has been cut.
+     * If the pieces can't be saved they are cut again next time and the failure is counted.
+     * @param imageHash The hash of the image the pieces are cut from
+     * @param sheet
+     */
+    public void saveLater(final long imageHash, final CutSheet sheet)
+    {
+        Workers.getBackground().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    save(imageHash, sheet);
+                }
+                catch (IOException | SecurityException e)
+                {
+                    //the folder can't be written or the old file is still in use
+                    addFailure();
+                }
+            }
+        });
+    }
+    
+    private synchronized void addFailure()
+    {
+        failures++;
+    }
+    
+    /**
+     * Save the pieces of the sheet, every piece has to be cut already.
+     * The file is written somewhere else first so a partial file is never read.
+     * @param imageHash The hash of the image the pieces are cut from
+     * @param sheet
+     * @throws IOException
+     */
+    public void save(final long imageHash, final CutSheet sheet) throws IOException
+    {
+        final int count = sheet.getRows() * sheet.getCols();
+        final int length = sheet.getPieceWidth() * sheet.getPieceHeight();
+        
+        //the tabs are padded so the pixels start on a multiple of 4
+        final int tabsSize  = (count + 3) & ~3;
+        final int dataStart = HEADER_SIZE + tabsSize + (count * INDEX_SIZE);
+        
+        final ByteBuffer header = ByteBuffer.allocate(dataStart);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(imageHash);
+        header.putInt(sheet.getImage().getWidth());
+        header.putInt(sheet.getImage().getHeight());
+        header.putInt(sheet.getRows());
+        header.putInt(sheet.getCols());
+        header.putInt(sheet.getPieceWidth());
+        header.putInt(sheet.getPieceHeight());
+        header.putInt(sheet.getPuzzleCut().ordinal());
+        header.putInt(0);
+        
+        for (int index=0; index < count; index++)
+        {
+            header.put(sheet.getTab(index));
+        }
+        
+        final int[] pixels = new int[length];
+        final ByteBuffer block = ByteBuffer.allocate(length * 4);
+        final CRC32 crc = new CRC32();
+        
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Unable to create " + directory);
+        
+        final File temp = File.createTempFile("sheet", ".tmp", directory);
+        
+        try
+        {
+            try (RandomAccessFile output = new RandomAccessFile(temp, "rw"); FileChannel channel = output.getChannel())
+            {
+                for (int index=0; index < count; index++)
+                {
+                    final int offset = dataStart + (index * length * 4);
+                    
+                    sheet.getPiecePixels(index, pixels);
+                    
+                    block.clear();
+                    block.asIntBuffer().put(pixels);
+                    
+                    crc.reset();
+                    crc.update(block.array(), 0, block.capacity());
+                    
+                    header.putInt(HEADER_SIZE + tabsSize + (index * INDEX_SIZE), offset);
+                    header.putInt(HEADER_SIZE + tabsSize + (index * INDEX_SIZE) + 4, (int)crc.getValue());
+                    
+                    write(channel, block, offset);
+                }
+                
+                header.putInt(HEADER_CHECKSUM, getHeaderChecksum(header.array(), dataStart));
+                header.clear();
+                
+                write(channel, header, 0);
+            }
+            
+            final File file = getFile(imageHash, sheet);
+            
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            
+            evict(file);
+        }
+        finally
+        {
+            temp.delete();
+        }
+    }
+    
+    /**
+     * Write all of the buffer at the position
+     */
+    private static void write(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException
+    {
+        buffer.rewind();
+        
+        while (buffer.hasRemaining())
+        {
+            position += channel.write(buffer, position);
+        }
+    }
+    
+    /**
+     * The checksum of the header, tabs and index not including the checksum itself
+     */
+    private static int getHeaderChecksum(final byte[] bytes, final int dataStart)
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, HEADER_CHECKSUM);
+        crc.update(bytes, HEADER_SIZE, dataStart - HEADER_SIZE);
+        return (int)crc.getValue();
+    }
+    
+    /**
+     * Delete the files used the longest time ago until the files don't use more bytes than allowed
+     * @param keep The file just saved, this is never deleted
+     */
+    private synchronized void evict(final File keep)
+    {
+        final File[] files = directory.listFiles(new FileFilter()
+        {
+            @Override
+            public boolean accept(final File file)
+            {
+                return file.isFile() && file.getName().endsWith(EXTENSION);
+            }
+        });
+        
+        if (files == null)
+            return;
+        
+        //read the time and size once so they don't change while sorting
+        final List<Stored> stored = new ArrayList<>(files.length);
+        
+        long bytes = 0;
+        
+        for (File file : files)
+        {
+            stored.add(new Stored(file));
+            bytes += file.length();
+        }
+        
+        Collections.sort(stored, new Comparator<Stored>()
+        {
+            @Override
+            public int compare(final Stored a, final Stored b)
+            {
+                return Long.compare(a.modified, b.modified);
+            }
+        });
+        
+        for (Stored file : stored)
+        {
+            if (bytes <= maxBytes)
+                break;
+            
+            //a file that is still mapped may not be deleted on some systems
+            if (!file.file.equals(keep) && file.file.delete())
+                bytes -= file.length;
+        }
+    }
+    
+    /**
+     * The bytes used by the files
+     * @return long
+     */
+    public long getBytes()
+    {
+        long bytes = 0;
+        
+        final File[] files = directory.listFiles();
+        
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.getName().endsWith(EXTENSION))
+                    bytes += file.length();
+            }
+        }
+        
+        return bytes;
+    }
+    
+    /**
+     * How many times the saved pieces were found
+     * @return long
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+    
+    /**
+     * How many times the pieces were not saved and had to be cut
+     * @return long
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+    
+    /**
+     * How many times the pieces could not be saved
+     * @return long
+     */
+    public synchronized long getFailures()
+    {
+        return failures;
+    }
+    
+    /**
+     * Delete every file and reset the counters
+     */
+    public synchronized void clear()
+    {
+        final File[] files = directory.listFiles();
+        
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (file.getName().endsWith(EXTENSION))
+                    file.delete();
+            }
+        }
+        
+        hits = 0;
+        misses = 0;
+        failures = 0;
+    }
+    
+    /**
+     * The time and size of a file when the files were listed
+     */
+    private static final class Stored
+    {
+        private final File file;
+        private final long modified, length;
+        
+        private Stored(final File file)
+        {
+            this.file = file;
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+    
+    /**
+     * The pieces of a sheet read from a file. The pixels of each piece
+     * are checked when they are read since every piece is read once.
+     */
+    public static final class Entry
+    {
+        //the entire file mapped into memory
+        private final MappedByteBuffer buffer;
+        
+        //where each puzzle piece starts and its checksum
+        private final int[] offsets, checksums;
+        
+        //the number of pixels in each puzzle piece
+        private final int length;
+        
+        //has a puzzle piece been found that doesn't match its checksum
+        private volatile boolean corrupt = false;
+        
+        private Entry(final MappedByteBuffer buffer, final int[] offsets, final int[] checksums, final int length)
+        {
+            this.buffer = buffer;
+            this.offsets = offsets;
+            this.checksums = checksums;
+            this.length = length;
+        }
+        
+        /**
+         * Read the header, tabs and index of the file
+         * @return Entry The pieces, null if the file is for different settings or corrupt
+         */
+        private static Entry read(final MappedByteBuffer buffer, final long imageHash, final CutSheet sheet)
+        {
+            final int count = sheet.getRows() * sheet.getCols();
+            final int length = sheet.getPieceWidth() * sheet.getPieceHeight();
+            final int tabsSize  = (count + 3) & ~3;
+            final int dataStart = HEADER_SIZE + tabsSize + (count * INDEX_SIZE);
+            
+            if (buffer.capacity() < dataStart)
+                return null;
+            
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) != imageHash ||
+                buffer.getInt(16) != sheet.getImage().getWidth() || buffer.getInt(20) != sheet.getImage().getHeight() ||
+                buffer.getInt(24) != sheet.getRows() || buffer.getInt(28) != sheet.getCols() ||
+                buffer.getInt(32) != sheet.getPieceWidth() || buffer.getInt(36) != sheet.getPieceHeight() ||
+                buffer.getInt(40) != sheet.getPuzzleCut().ordinal())
+                return null;
+            
+            final byte[] header = new byte[dataStart];
+            buffer.duplicate().get(header);
+            
+            if (getHeaderChecksum(header, dataStart) != buffer.getInt(HEADER_CHECKSUM))
+                return null;
+            
+            final int[] offsets = new int[count];
+            final int[] checksums = new int[count];
+            
+            for (int index=0; index < count; index++)
+            {
+                //the pieces have to be cut with the same tabs
+                if (header[HEADER_SIZE + index] != sheet.getTab(index))
+                    return null;
+                
+                offsets[index]   = buffer.getInt(HEADER_SIZE + tabsSize + (index * INDEX_SIZE));
+                checksums[index] = buffer.getInt(HEADER_SIZE + tabsSize + (index * INDEX_SIZE) + 4);
+                
+                if (offsets[index] < dataStart || (long)offsets[index] + (length * 4L) > buffer.capacity())
+                    return null;
+            }
+            
+            return new Entry(buffer, offsets, checksums, length);
+        }
+        
+        /**
+         * Copy the premultiplied ARGB pixels of the puzzle piece straight from the mapped file.
+         * The piece is checked a block at a time before it is copied.
+         * This can be called from different threads at the same time.
+         * @param index
+         * @param pixels Where the pixels are copied to
+         * @return boolean false if the pixels don't match the checksum
+         */
+        public boolean readPiece(final int index, final int[] pixels)
+        {
+            final ByteBuffer block = buffer.duplicate();
+            block.position(offsets[index]);
+            block.limit(offsets[index] + (length * 4));
+            
+            final byte[] bytes = new byte[Math.min(CHECKSUM_BLOCK, length * 4)];
+            
+            //the checksum can only be updated from an array
+            final CRC32 crc = new CRC32();
+            
+            while (block.hasRemaining())
+            {
+                final int count = Math.min(bytes.length, block.remaining());
+                block.get(bytes, 0, count);
+                crc.update(bytes, 0, count);
+            }
+            
+            if ((int)crc.getValue() != checksums[index])
+            {
+                corrupt = true;
+                return false;
+            }
+            
+            block.position(offsets[index]);
+            block.asIntBuffer().get(pixels, 0, length);
+            return true;
+        }
+        
+        /**
+         * Has a puzzle piece been found that doesn't match its checksum
+         * @return boolean
+         */
+        public boolean isCorrupt()
+        {
+            return corrupt;
+        }
+    }
+}
\ No newline at end of file
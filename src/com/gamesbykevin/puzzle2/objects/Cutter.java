@@ -1,13 +1,11 @@
 package com.gamesbykevin.puzzle2.objects;
 
-import java.awt.Image;
 import java.awt.Rectangle;
-import java.awt.Toolkit;
 import java.awt.geom.*;
-import java.awt.image.FilteredImageSource;
-import java.awt.image.MemoryImageSource;
-import java.awt.image.PixelGrabber;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class Cutter 
 {
@@ -16,153 +14,347 @@ public class Cutter
         Traditional, None
     }
     
-    public static ArrayList getCutArea(Puzzle puzzle, Piece piece)
+    //pixels of the puzzle piece being cut, each background thread has its own
+    private static final ThreadLocal<int[]> PIXELS = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[0];
+        }
+    };
+    
+    /**
+     * Each area of the puzzle piece that can be cut. 
+     * The 4 corners are always cut, the 4 sides are cut if 
+     * there is a puzzle piece next to it.
+     */
+    public enum Side
+    {
+        NorthWest, NorthEast, SouthWest, SouthEast, North, South, East, West
+    }
+    
+    public static ArrayList getCutArea(CutSheet sheet, final int col, final int row)
     {
         ArrayList cutAreas = new ArrayList();
         
-        int extraW = puzzle.getExtraWidth();
-        int extraH = puzzle.getExtraHeight();
+        for (Side side : getSides(sheet, col, row))
+        {
+            cutAreas.add(getCutArea(side, hasMale(sheet, col, row, side), sheet.getPieceWidth(), sheet.getPieceHeight(), sheet.getExtraWidth(), sheet.getExtraHeight(), sheet.getPuzzleCut()));
+        }
         
-        int cols = puzzle.getCols();
-        int rows = puzzle.getRows();
+        return cutAreas;//cutArea
+    }
+    
+    /**
+     * Get the sides of the puzzle piece that will be cut.
+     * Sides on the outside of the puzzle are not cut.
+     * @param sheet
+     * @param col
+     * @param row
+     * @return List<Side>
+     */
+    private static List<Side> getSides(CutSheet sheet, final int col, final int row)
+    {
+        List<Side> sides = new ArrayList<>();
         
         //remove 4 corners
-        int wc = 0;                             //west side
-        int ec = 0 + piece.getWidth() - extraW;    //east side
-        int sr = 0 + piece.getHeight() - extraH;   //south side
-        int nr = 0;                             //north side
-        
-        //NW
-        cutAreas.add(new Area(new Rectangle(wc, nr, extraW, extraH)));
-        //NE
-        cutAreas.add(new Area(new Rectangle(ec, nr, extraW, extraH)));
-        //SW
-        cutAreas.add(new Area(new Rectangle(wc, sr, extraW, extraH)));
-        //SE
-        cutAreas.add(new Area(new Rectangle(ec, sr, extraW, extraH)));
-        
-        if (piece.getCol() > 0)
+        sides.add(Side.NorthWest);
+        sides.add(Side.NorthEast);
+        sides.add(Side.SouthWest);
+        sides.add(Side.SouthEast);
+        
+        if (col > 0)
+            sides.add(Side.West);
+        
+        if (col < sheet.getCols() - 1)
+            sides.add(Side.East);
+        
+        if (row > 0)
+            sides.add(Side.North);
+        
+        if (row < sheet.getRows() - 1)
+            sides.add(Side.South);
+        
+        return sides;
+    }
+    
+    /**
+     * Does the puzzle piece have a male connector on the given side
+     * @param sheet
+     * @param col
+     * @param row
+     * @param side
+     * @return boolean
+     */
+    private static boolean hasMale(CutSheet sheet, final int col, final int row, Side side)
+    {
+        switch(side)
         {
-            Area west = new Area(new Rectangle(0, extraH, extraW, piece.getHeight() - (extraH * 2)));
-            
-            switch(puzzle.getPuzzleCut())
-            {
-                case None:
-                    break;
-                case Traditional:
-                    if (piece.hasWestMale())
-                    {
-                        west.subtract(new Area(new Ellipse2D.Double(0, (piece.getHeight()/2) - (extraH/2), extraW, extraH)));
-                    }
-                    else
-                    {
-                        west.add(new Area(new Ellipse2D.Double(extraW, (piece.getHeight()/2) - (extraH/2), extraW, extraH)));
-                    }
-                    break;
-                    
-                    
-                    //OTHER CUTS CAN GO HERE
-                    
-            }
-            
-            cutAreas.add(west);
+            case North:
+                return sheet.hasNorthMale(col, row);
+            case South:
+                return sheet.hasSouthMale(col, row);
+            case East:
+                return sheet.hasEastMale(col, row);
+            case West:
+                return sheet.hasWestMale(col, row);
+            default:
+                return false;
         }
+    }
+    
+    /**
+     * Get the area that will be cut from one side of a puzzle piece
+     * @param side The side of the puzzle piece
+     * @param male Does the side have a male connector
+     * @param width Width of the puzzle piece including the extra width
+     * @param height Height of the puzzle piece including the extra height
+     * @param extraW Extra width on each end of the puzzle piece
+     * @param extraH Extra height on each end of the puzzle piece
+     * @param puzzleCut The style of cut
+     * @return Area
+     */
+    public static Area getCutArea(Side side, boolean male, int width, int height, int extraW, int extraH, PuzzleCut puzzleCut)
+    {
+        //remove 4 corners
+        int wc = 0;                     //west side
+        int ec = 0 + width - extraW;    //east side
+        int sr = 0 + height - extraH;   //south side
+        int nr = 0;                     //north side
         
-        if (piece.getCol() < cols - 1)
+        switch(side)
         {
-            Area east = new Area(new Rectangle(piece.getWidth() - extraW, extraH, extraW, piece.getHeight() - (extraH * 2)));
-            
-            switch(puzzle.getPuzzleCut())
-            {
-                case None:
-                    break;
-                case Traditional:
-                    if (piece.hasEastMale())
-                    {
-                        east.subtract(new Area(new Ellipse2D.Double(piece.getWidth() - extraW, (piece.getHeight()/2) - (extraH/2), extraW, extraH)));
-                    }
-                    else
-                    {
-                        east.add(new Area(new Ellipse2D.Double(piece.getWidth() - (extraW * 2), (piece.getHeight()/2) - (extraH/2), extraW, extraH)));
-                    }
-                    break;
-            }
-            
-            cutAreas.add(east);
+            case NorthWest:
+                return new Area(new Rectangle(wc, nr, extraW, extraH));
+                
+            case NorthEast:
+                return new Area(new Rectangle(ec, nr, extraW, extraH));
+                
+            case SouthWest:
+                return new Area(new Rectangle(wc, sr, extraW, extraH));
+                
+            case SouthEast:
+                return new Area(new Rectangle(ec, sr, extraW, extraH));
+                
+            case West:
+                Area west = new Area(new Rectangle(0, extraH, extraW, height - (extraH * 2)));
+                
+                switch(puzzleCut)
+                {
+                    case None:
+                        break;
+                    case Traditional:
+                        if (male)
+                        {
+                            west.subtract(new Area(new Ellipse2D.Double(0, (height/2) - (extraH/2), extraW, extraH)));
+                        }
+                        else
+                        {
+                            west.add(new Area(new Ellipse2D.Double(extraW, (height/2) - (extraH/2), extraW, extraH)));
+                        }
+                        break;
+                        
+                        
+                        //OTHER CUTS CAN GO HERE
+                        
+                }
+                
+                return west;
+                
+            case East:
+                Area east = new Area(new Rectangle(width - extraW, extraH, extraW, height - (extraH * 2)));
+                
+                switch(puzzleCut)
+                {
+                    case None:
+                        break;
+                    case Traditional:
+                        if (male)
+                        {
+                            east.subtract(new Area(new Ellipse2D.Double(width - extraW, (height/2) - (extraH/2), extraW, extraH)));
+                        }
+                        else
+                        {
+                            east.add(new Area(new Ellipse2D.Double(width - (extraW * 2), (height/2) - (extraH/2), extraW, extraH)));
+                        }
+                        break;
+                }
+                
+                return east;
+                
+            case North:
+                Area north = new Area(new Rectangle(extraW, 0, width - (extraW * 2), extraH));
+                
+                switch(puzzleCut)
+                {
+                    case None:
+                        break;
+                    case Traditional:
+                        if (male)
+                        {
+                            north.subtract(new Area(new Ellipse2D.Double((width/2) - (extraW/2), 0, extraW, extraH)));
+                        }
+                        else
+                        {
+                            north.add(new Area(new Ellipse2D.Double((width/2) - (extraW/2), extraH, extraW, extraH)));
+                        }
+                        break;
+                }
+                
+                return north;
+                
+            case South:
+                Area south = new Area(new Rectangle(extraW, height - extraH, width - (extraW * 2), extraH));
+                
+                switch(puzzleCut)
+                {
+                    case None:
+                        break;
+                    case Traditional:
+                        if (male)
+                        {
+                            south.subtract(new Area(new Ellipse2D.Double((width/2) - (extraW/2), height - extraH, extraW, extraH)));
+                        }
+                        else
+                        {
+                            south.add(new Area(new Ellipse2D.Double((width/2) - (extraW/2), height - (extraH*2), extraW, extraH)));
+                        }
+                        break;
+                }
+                
+                return south;
+                
+            default:
+                return new Area();
         }
+    }
+    
+    /**
+     * Get the masks of each area that will be cut from the puzzle piece.
+     * The masks come from the sheet's cache so each shape is only rasterized once.
+     * @param sheet
+     * @param col
+     * @param row
+     * @return List<CutMask>
+     */
+    public static List<CutMask> getCutMasks(CutSheet sheet, final int col, final int row)
+    {
+        List<Side> sides = getSides(sheet, col, row);
+        
+        List<CutMask> masks = new ArrayList<>(sides.size());
         
-        if (piece.getRow() > 0)
+        for (Side side : sides)
         {
-            Area north = new Area(new Rectangle(extraW, 0, piece.getWidth() - (extraW * 2), extraH));
-            
-            switch(puzzle.getPuzzleCut())
-            {
-                case None:
-                    break;
-                case Traditional:
-                    if (piece.hasNorthMale())
-                    {
-                        north.subtract(new Area(new Ellipse2D.Double((piece.getWidth()/2) - (extraW/2), 0, extraW, extraH)));
-                    }
-                    else
-                    {
-                        north.add(new Area(new Ellipse2D.Double((piece.getWidth()/2) - (extraW/2), extraH, extraW, extraH)));
-                    }
-                    break;
-            }
-            
-            cutAreas.add(north);
+            masks.add(sheet.getCutMaskCache().get(side, hasMale(sheet, col, row, side), sheet.getPieceWidth(), sheet.getPieceHeight(), sheet.getExtraWidth(), sheet.getExtraHeight(), sheet.getPuzzleCut()));
         }
         
-        if (piece.getRow() < rows - 1)
+        return masks;
+    }
+    
+    /**
+     * Cut the image for the puzzle piece at the given col, row.
+     * The pixels are copied straight from the sheet into the new image 
+     * without grabbing the pixels of the image, and the new image stays 
+     * a managed image so Java2D is able to accelerate it.
+     * @param sheet
+     * @param col
+     * @param row
+     * @return BufferedImage
+     */
+    public static BufferedImage createPiece(CutSheet sheet, final int col, final int row)
+    {
+        BufferedImage image = new BufferedImage(sheet.getPieceWidth(), sheet.getPieceHeight(), BufferedImage.TYPE_INT_ARGB);
+        cutPiece(sheet, col, row, image, 0, 0);
+        return image;
+    }
+    
+    /**
+     * Cut the image for the puzzle piece at the given col, row 
+     * and write it to an area of an existing image
+     * @param sheet
+     * @param col
+     * @param row
+     * @param destination The image the puzzle piece will be written to
+     * @param x x-coordinate of the puzzle piece in the destination
+     * @param y y-coordinate of the puzzle piece in the destination
+     */
+    public static void cutPiece(CutSheet sheet, final int col, final int row, final BufferedImage destination, final int x, final int y)
+    {
+        int[] pixels = getPiecePixels(sheet, col, row);
+        
+        if (destination.isAlphaPremultiplied())
+            premultiply(pixels, sheet.getPieceWidth() * sheet.getPieceHeight());
+        
+        destination.getRaster().setDataElements(x, y, sheet.getPieceWidth(), sheet.getPieceHeight(), pixels);
+    }
+    
+    /**
+     * Multiply the color of each pixel by its alpha, the way premultiplied images are stored
+     * @param pixels ARGB pixels
+     * @param length The number of pixels to change
+     */
+    public static void premultiply(final int[] pixels, final int length)
+    {
+        for (int i=0; i < length; i++)
         {
-            Area south = new Area(new Rectangle(extraW, piece.getHeight() - extraH, piece.getWidth() - (extraW * 2), extraH));
+            final int alpha = pixels[i] >>> 24;
             
-            switch(puzzle.getPuzzleCut())
-            {
-                case None:
-                    break;
-                case Traditional:
-                    if (piece.hasSouthMale())
-                    {
-                        south.subtract(new Area(new Ellipse2D.Double((piece.getWidth()/2) - (extraW/2), piece.getHeight() - extraH, extraW, extraH)));
-                    }
-                    else
-                    {
-                        south.add(new Area(new Ellipse2D.Double((piece.getWidth()/2) - (extraW/2), piece.getHeight() - (extraH*2), extraW, extraH)));
-                    }
-                    break;
-            }
+            if (alpha == 255)
+                continue;
             
-            cutAreas.add(south);
+            final int red   = ((((pixels[i] >> 16) & 0xff) * alpha) + 127) / 255;
+            final int green = ((((pixels[i] >>  8) & 0xff) * alpha) + 127) / 255;
+            final int blue  = ((( pixels[i]        & 0xff) * alpha) + 127) / 255;
+            
+            pixels[i] = (alpha << 24) | (red << 16) | (green << 8) | blue;
         }
-        
-        return cutAreas;//cutArea
     }
     
-    public static Piece createPiece(Puzzle puzzle, Piece piece) throws Exception
+    /**
+     * Get the pixels of the puzzle piece with the cut areas removed.
+     * The array returned is re-used by the current thread for the next puzzle piece.
+     * @param sheet
+     * @param col
+     * @param row
+     * @return int[] ARGB pixels the size of the puzzle piece
+     */
+    private static int[] getPiecePixels(CutSheet sheet, final int col, final int row)
     {
-        //get areas to exclude from image
-        ArrayList cutAreas = getCutArea(puzzle, piece);
+        Rectangle r = sheet.getPieceArea(col, row);
+        
+        //copy portion of pixels from original image, anything outside of the image will be empty
+        final int[] source = sheet.getPixels();
+        final int imageW = sheet.getImage().getWidth();
+        final int imageH = sheet.getImage().getHeight();
         
-        Rectangle r = piece.getRectangle();
-        //grab portion of pixels from original image
-        PixelGrabber pg = new PixelGrabber(puzzle.getImage(), r.x, r.y, r.width, r.height, true);
-        pg.grabPixels();
-        int pixels[] = (int[])(int[])pg.getPixels();
+        int[] pixels = PIXELS.get();
         
-        //creates new image with the given pixels
-        MemoryImageSource mis = new MemoryImageSource(r.width, r.height, pixels, 0, r.width);
-        Image img = Toolkit.getDefaultToolkit().createImage(mis);
+        if (pixels.length < r.width * r.height)
+        {
+            pixels = new int[r.width * r.height];
+            PIXELS.set(pixels);
+        }
         
-        //create image filter that will cut the parts of the image
-        CustomImageFilter imgF = new CustomImageFilter(cutAreas);
+        Arrays.fill(pixels, 0, r.width * r.height, 0);
         
-        //apply newly created empty image and apply filter
-        FilteredImageSource fis = new FilteredImageSource(img.getSource(), imgF);
+        final int startX = Math.max(0, r.x);
+        final int endX   = Math.min(imageW, r.x + r.width);
+        
+        if (startX < endX)
+        {
+            for (int y = Math.max(0, r.y); y < Math.min(imageH, r.y + r.height); y++)
+            {
+                System.arraycopy(source, (y * imageW) + startX, pixels, ((y - r.y) * r.width) + (startX - r.x), endX - startX);
+            }
+        }
+        
+        //cut the parts of the image that are not part of the puzzle piece
+        for (CutMask mask : getCutMasks(sheet, col, row))
+        {
+            mask.apply(pixels, r.width, r.height);
+        }
         
-        //create image from cut image and set the image to the puzzle piece
-        piece.setImage(Toolkit.getDefaultToolkit().createImage(fis));
-        return piece;
+        return pixels;
     }
 }
\ No newline at end of file
@@ -1,47 +1,135 @@
 package com.gamesbykevin.puzzle2.objects;
 
-import com.gamesbykevin.framework.base.Cell;
-import com.gamesbykevin.framework.base.Sprite;
-
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
 
-public final class Piece extends Sprite
+/**
+ * A puzzle piece, the location and other values of 
+ * the piece are stored in the board by the id of the piece
+ * @author GOD
+ */
+public final class Piece
 {
-    private boolean northMale;
-    private boolean southMale;
-    private boolean eastMale;
-    private boolean westMale;
+    //the board that contains the values of this piece
+    private final Board board;
+    
+    //the id of this piece in the board
+    private final int id;
+    
+    //the connected piece selected
+    private Piece selectedPiece;
+    
+    //contains the cut image of this piece
+    private CutSheet sheet;
+    
+    public Piece(final Board board, final int id)
+    {
+        this.board = board;
+        this.id = id;
+    }
+    
+    public int getId()
+    {
+        return id;
+    }
+    
+    public int getCol()
+    {
+        return board.getCol(id);
+    }
+    
+    public int getRow()
+    {
+        return board.getRow(id);
+    }
+    
+    public int getX()
+    {
+        return board.getX(id);
+    }
+    
+    public int getY()
+    {
+        return board.getY(id);
+    }
+    
+    public int getWidth()
+    {
+        return board.getWidth();
+    }
     
-    //list of pieces connected to this piece
-    private List<Piece> children;
+    public int getHeight()
+    {
+        return board.getHeight();
+    }
     
-    //store original width and height
-    private int originalWidth, originalHeight;
+    public Point getPoint()
+    {
+        return new Point(getX(), getY());
+    }
     
-    //we need original position
-    private Point originalLocation;
+    public Rectangle getRectangle()
+    {
+        return new Rectangle(getX(), getY(), getWidth(), getHeight());
+    }
     
-    //the children piece selected
-    private int selectedPieceIndex = -1;
+    /**
+     * Does the piece contain the given x,y coordinate
+     * @param x
+     * @param y
+     * @return boolean
+     */
+    public boolean contains(final int x, final int y)
+    {
+        return (x >= getX() && y >= getY() && x < getX() + getWidth() && y < getY() + getHeight());
+    }
     
-    //where location where the piece will start at
-    private Cell startCell;
+    public void setLocation(final int x, final int y)
+    {
+        board.setLocation(id, x, y);
+    }
     
-    public Piece()
+    public void setStartCell(final int col, final int row)
     {
-        children = new ArrayList<>();
+        board.setStartCell(id, col, row);
     }
     
-    public void setStartCell(final Cell startCell)
+    public int getStartCol()
     {
-        this.startCell = startCell;
+        return board.getStartCol(id);
     }
     
-    public Cell getStartCell()
+    public int getStartRow()
     {
-        return this.startCell;
+        return board.getStartRow(id);
+    }
+    
+    /**
+     * Set the sheet that contains the cut image of this piece
+     * @param sheet 
+     */
+    public void setCutSheet(final CutSheet sheet)
+    {
+        this.sheet = sheet;
+    }
+    
+    /**
+     * Get the piece that represents the pieces connected to this piece, 
+     * if this piece is not connected the current piece is returned
+     * @return Piece
+     */
+    public Piece getRoot()
+    {
+        return board.getClusters().getLeader(id);
+    }
+    
+    /**
+     * Get the next piece connected to this piece, 
+     * if this piece is not connected the current piece is returned
+     * @return Piece
+     */
+    public Piece getNext()
+    {
+        return board.getClusters().getNext(id);
     }
     
     /**
@@ -51,7 +139,7 @@ public final class Piece extends Sprite
      */
     public void add(Piece newPiece)
     {
-        add(newPiece, this.getPoint());
+        add(newPiece, getX(), getY());
     }
     
     /**
@@ -62,57 +150,62 @@ public final class Piece extends Sprite
      */
     public void add(Piece newPiece, final Point mousePoint)
     {
-        //check if puzzle piece being added already has child
-        if (newPiece.hasChildren())
-        {
-            //get children and add to current children piece
-            for (Piece piece : newPiece.getChildren())
-            {
-                children.add(piece);
-            }
-        }
-        
-        //children added so remove from new piece
-        newPiece.removeChildren();
-        
-        //add child to parent
-        children.add(newPiece);
+        add(newPiece, mousePoint.x, mousePoint.y);
+    }
+    
+    /**
+     * Add Piece to current piece. If the new piece has children pieces
+     * those children pieces are also added to the current piece.
+     * @param newPiece 
+     * @param x x-coordinate the piece will be placed at
+     * @param y y-coordinate the piece will be placed at
+     */
+    public void add(Piece newPiece, final int x, final int y)
+    {
+        //the new piece and the pieces connected to it are now connected to this piece
+        board.getClusters().merge(id, newPiece.id);
         
         //after child is added align
-        setNewPosition(mousePoint);
+        setNewPosition(x, y);
+    }
+    
+    public int getOriginalX()
+    {
+        return board.getOriginalX(id);
     }
     
-    public Point getOriginalLocation()
+    public int getOriginalY()
     {
-        return this.originalLocation;
+        return board.getOriginalY(id);
     }
     
     /**
      * Set original position, needed for cpu to determine where pieces are to be placed
-     * @param originalLocation 
+     * @param x
+     * @param y 
      */
-    public void setOriginalLocation(Point originalLocation)
+    public void setOriginalLocation(final int x, final int y)
     {
-        this.originalLocation = originalLocation;
+        board.setOriginalLocation(id, x, y);
     }
     
-    private void resetSelectedPieceIndex()
+    private void resetSelectedPiece()
     {
-        this.selectedPieceIndex = -1;
+        this.selectedPiece = null;
     }
     
     /**
      * Set selected piece whether it be the current piece or the child piece
      */
-    public void setSelectedPieceIndex(final Point point)
+    public void setSelectedPiece(final int x, final int y)
     {
-        resetSelectedPieceIndex();
+        resetSelectedPiece();
         
-        for (int i=0; i < children.size(); i++)
+        for (Piece piece = getNext(); piece != this; piece = piece.getNext())
         {
-            if (children.get(i).getRectangle().contains(point))
+            if (piece.contains(x, y))
             {
-                this.selectedPieceIndex = i;
+                this.selectedPiece = piece;
                 break;
             }
         }
@@ -124,15 +217,23 @@ public final class Piece extends Sprite
      */
     public void setNewPosition(Point mousePoint)
     {
-        Point point = new Point(mousePoint);
-        
+        setNewPosition(mousePoint.x, mousePoint.y);
+    }
+    
+    /**
+     * Update the puzzle pieces location as well as the children pieces
+     * @param x x-coordinate
+     * @param y y-coordinate
+     */
+    public void setNewPosition(final int x, final int y)
+    {
         final int baseRow;
         final int baseCol;
         
-        if (selectedPieceIndex > -1)
+        if (selectedPiece != null)
         {
-            baseCol = children.get(selectedPieceIndex).getCol();
-            baseRow = children.get(selectedPieceIndex).getRow();
+            baseCol = selectedPiece.getCol();
+            baseRow = selectedPiece.getRow();
         }
         else
         {
@@ -143,14 +244,14 @@ public final class Piece extends Sprite
         //update parent Piece
         int diffCol = getCol() - baseCol;
         int diffRow = getRow() - baseRow;
-        super.setLocation(point.x + (diffCol * getOriginalWidth()), point.y + (diffRow * getOriginalHeight()));
+        setLocation(x + (diffCol * getOriginalWidth()), y + (diffRow * getOriginalHeight()));
         
         //update children pieces
-        for (Piece child : children)
+        for (Piece child = getNext(); child != this; child = child.getNext())
         {
             diffCol = child.getCol() - baseCol;
             diffRow = child.getRow() - baseRow;
-            child.setLocation(point.x + (diffCol * getOriginalWidth()), point.y + (diffRow * getOriginalHeight()));
+            child.setLocation(x + (diffCol * getOriginalWidth()), y + (diffRow * getOriginalHeight()));
         }
     }
     
@@ -160,142 +261,37 @@ public final class Piece extends Sprite
      */
     public boolean hasChildren()
     {
-        return (children.size() > 0);
-    }
-    
-    /**
-     * Does this piece have a child piece at the give x,y location
-     * @param point
-     * @return boolean
-     */
-    public boolean hasChild(final Point point)
-    {
-        for (int i=0; i < children.size(); i++)
-        {
-            if (children.get(i).getRectangle().contains(point))
-                return true;
-        }
-        
-        return false;
-    }
-    
-    /**
-     * Get the array list of child pieces
-     * @return List<Piece>
-     */
-    public List<Piece> getChildren()
-    {
-        return children;
-    }
-    
-    /**
-     * Clear the array list
-     */
-    public void removeChildren()
-    {
-        children.clear();
-    }
-    
-    public void setOriginalWidth(final int originalWidth)
-    {
-        this.originalWidth = originalWidth;
-    }
-    
-    public void setOriginalHeight(final int originalHeight)
-    {
-        this.originalHeight = originalHeight;
+        return (board.getClusters().getSize(id) > 1);
     }
     
     public int getOriginalWidth()
     {
-        return originalWidth;
+        return board.getOriginalWidth();
     }
     
     public int getOriginalHeight()
     {
-        return originalHeight;
-    }
-    
-    public void setNorthMale(final boolean northMale)
-    {
-        this.northMale = northMale;
-    }
-    
-    public void setSouthMale(final boolean southMale)
-    {
-        this.southMale = southMale;
-    }
-    
-    public void setEastMale(final boolean eastMale)
-    {
-        this.eastMale = eastMale;
-    }
-    
-    public void setWestMale(final boolean westMale)
-    {
-        this.westMale = westMale;
+        return board.getOriginalHeight();
     }
     
     public boolean hasNorthMale()
     {
-        return northMale;
+        return board.hasMale(id, CutSheet.NORTH_MALE);
     }
     
     public boolean hasSouthMale()
     {
-        return southMale;
+        return board.hasMale(id, CutSheet.SOUTH_MALE);
     }
     
     public boolean hasEastMale()
     {
-        return eastMale;
+        return board.hasMale(id, CutSheet.EAST_MALE);
     }
     
     public boolean hasWestMale()
     {
-        return westMale;
-    }
-    
-    /**
-     * Check if any children pieces intersect with puzzle piece or its children
-     * @param piece The piece we want to check
-     * @return boolean
-     */
-    public boolean intersectsChild(Piece piece)
-    {
-        if (children.size() > 0)
-        {
-            for (int i=0; i < children.size(); i++)
-            {
-                Piece child = children.get(i);
-
-                if (child.intersects(piece))
-                    return true;
-
-                //check if the current child piece intersects the other puzzle piece's child
-                //or if the other puzzle piece's child intersects current piece
-                for (Piece child2 : piece.getChildren())
-                {
-                    if (child2.intersects(child) || child2.intersects(this))
-                        return true;
-                }
-            }
-        }
-        else
-        {   
-            //if the current piece doesnt have child pieces 
-            //still check if it intersects the other puzzle piece's child pieces
-            
-            //does the current piece intersect the other child pieces
-            for (Piece child2 : piece.getChildren())
-            {
-                if (child2.intersects(this))
-                    return true;
-            }
-        }
-        
-        //no it doesn't intersect
-        return false;
+        return board.hasMale(id, CutSheet.WEST_MALE);
     }
     
     /**
@@ -306,75 +302,94 @@ public final class Piece extends Sprite
     public boolean intersects(Piece piece)
     {
         //if rectangles don't intersect at all then dont continue test
-        if (!piece.getRectangle().intersects(getRectangle()))
+        if (!intersects(piece.getX(), piece.getY(), piece.getWidth(), piece.getHeight(), getX(), getY(), getWidth(), getHeight()))
             return false;
         
         final int verticalH   = (int)(piece.getHeight() * Puzzle.EXTRA_RATIO);
         final int horizontalW = (int)(piece.getWidth() *  Puzzle.EXTRA_RATIO);
         
-        Rectangle r1 = null;
-        Rectangle r2 = null;
-        
         //if two puzzle pieces have the same column and 1 row away
         if (getCol() == piece.getCol() && getRow() - 1 == piece.getRow())
         {
-            //piece above current get bottom area to test collision
-            r1 = new Rectangle(piece.getX(), piece.getY() + piece.getHeight() - verticalH, piece.getWidth(), verticalH);
-            
-            //current piece get top area to test collision
-            r2 = new Rectangle(getX(), getY(), getWidth(), verticalH);
+            //piece above current get bottom area, current piece get top area to test collision
+            return intersects(
+                piece.getX(), piece.getY() + piece.getHeight() - verticalH, piece.getWidth(), verticalH, 
+                getX(), getY(), getWidth(), verticalH);
         }
         
         //if two puzzle pieces have the same column and 1 row away
         if (getCol() == piece.getCol() && getRow() + 1 == piece.getRow())
         {   
-            //piece below current piece get top area to test collision
-            r1 = new Rectangle(piece.getX(), piece.getY(), piece.getWidth(), verticalH);
-            
-            //current piece get bottom area to test collision
-            r2 = new Rectangle(getX(), getY() + getHeight() - verticalH, getWidth(), verticalH);
+            //piece below current piece get top area, current piece get bottom area to test collision
+            return intersects(
+                piece.getX(), piece.getY(), piece.getWidth(), verticalH, 
+                getX(), getY() + getHeight() - verticalH, getWidth(), verticalH);
         }
         
         //if two puzzle pieces have the same row and 1 column away
         if (getCol() + 1 == piece.getCol() && getRow() == piece.getRow())
         {
-            //piece to the right of the current piece get left border
-            r1 = new Rectangle(piece.getX(), piece.getY(), horizontalW, piece.getHeight());
-            
-            //current piece get right area to test collision
-            r2 = new Rectangle(getX() + getWidth() - horizontalW, getY(), horizontalW, getHeight());
+            //piece to the right of the current piece get left border, current piece get right area to test collision
+            return intersects(
+                piece.getX(), piece.getY(), horizontalW, piece.getHeight(), 
+                getX() + getWidth() - horizontalW, getY(), horizontalW, getHeight());
         }
         
         //if two puzzle pieces have the same row and 1 column away
         if (getCol() - 1 == piece.getCol() && getRow() == piece.getRow())
         {
-            //piece to the left of the current piece get right border
-            r1 = new Rectangle(piece.getX() + piece.getWidth() - horizontalW, piece.getY(), horizontalW, piece.getHeight());
-            
-            //current piece get right area to test collision
-            r2 = new Rectangle(getX(), getY(), horizontalW, getHeight());
+            //piece to the left of the current piece get right border, current piece get left area to test collision
+            return intersects(
+                piece.getX() + piece.getWidth() - horizontalW, piece.getY(), horizontalW, piece.getHeight(), 
+                getX(), getY(), horizontalW, getHeight());
         }
         
-        if (r1 == null || r2 == null)
-        {
+        return false;
+    }
+    
+    /**
+     * Do the 2 rectangles intersect, same as Rectangle.intersects() without creating the rectangles
+     * @return boolean
+     */
+    private static boolean intersects(final int x1, final int y1, final int w1, final int h1, final int x2, final int y2, final int w2, final int h2)
+    {
+        if (w1 <= 0 || h1 <= 0 || w2 <= 0 || h2 <= 0)
             return false;
-        }
-        else
-        {
-            return r1.intersects(r2);
-        }
+        
+        return (x2 < x1 + w1 && y2 < y1 + h1 && x1 < x2 + w2 && y1 < y2 + h2);
     }
     
-    @Override
     public Graphics draw(Graphics g)
     {
-        super.draw(g);
+        return draw(g, null);
+    }
+    
+    /**
+     * Draw this piece and the pieces connected to it
+     * @param g
+     * @param clip Only the pieces within this area are drawn, if null every piece is drawn
+     * @return Graphics
+     */
+    public Graphics draw(Graphics g, final Rectangle clip)
+    {
+        drawPiece(g, clip);
         
-        for (int i=0; i < children.size(); i++)
+        //draw the pieces connected to this piece
+        for (Piece child = getNext(); child != this; child = child.getNext())
         {
-            children.get(i).draw(g);
+            child.drawPiece(g, clip);
         }
         
         return g;
     }
+    
+    private void drawPiece(Graphics g, final Rectangle clip)
+    {
+        if (clip != null && !intersects(clip.x, clip.y, clip.width, clip.height, getX(), getY(), getWidth(), getHeight()))
+            return;
+        
+        //the piece can't be drawn until it has been cut
+        if (sheet != null)
+            sheet.drawPiece(g, sheet.getIndex(getCol(), getRow()), getX(), getY());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Uniform grid of the puzzle pieces so we only need to check the
+ * pieces near a location instead of every piece in the puzzle.
+ * Each cell is the size of one puzzle piece and each piece is
+ * stored in the cell that contains its x,y coordinate.
+ * @author GOD
+ */
+public final class PieceGrid
+{
+    //the area covered by the grid, pieces outside the area are stored in the closest cell
+    private final int x, y;
+    
+    //dimensions of each cell
+    private final int cellWidth, cellHeight;
+    
+    //number of cols/rows of cells
+    private final int cols, rows;
+    
+    //the pieces in each cell
+    private final List<List<Piece>> cells;
+    
+    /**
+     * Create an empty grid
+     * @param area The area the pieces will be placed within
+     * @param cellWidth Width of a puzzle piece
+     * @param cellHeight Height of a puzzle piece
+     */
+    public PieceGrid(final Rectangle area, final int cellWidth, final int cellHeight)
+    {
+        this.x = area.x;
+        this.y = area.y;
+        this.cellWidth  = Math.max(1, cellWidth);
+        this.cellHeight = Math.max(1, cellHeight);
+        this.cols = (area.width  / this.cellWidth)  + 1;
+        this.rows = (area.height / this.cellHeight) + 1;
+        
+        cells = new ArrayList<>(cols * rows);
+        
+        for (int i=0; i < cols * rows; i++)
+        {
+            cells.add(new ArrayList<Piece>());
+        }
+    }
+    
+    private int getCol(final int x)
+    {
+        return Math.max(0, Math.min(cols - 1, (int)Math.floor((x - this.x) / (double)cellWidth)));
+    }
+    
+    private int getRow(final int y)
+    {
+        return Math.max(0, Math.min(rows - 1, (int)Math.floor((y - this.y) / (double)cellHeight)));
+    }
+    
+    private List<Piece> getCell(final int x, final int y)
+    {
+        return cells.get((getRow(y) * cols) + getCol(x));
+    }
+    
+    /**
+     * Add the piece to the grid at its current location
+     * @param piece
+     */
+    public void add(final Piece piece)
+    {
+        getCell(piece.getX(), piece.getY()).add(piece);
+    }
+    
+    /**
+     * Move the piece in the grid, this needs to be called before the location of the piece is changed
+     * @param piece The piece that is moving
+     * @param x The new x-coordinate of the piece
+     * @param y The new y-coordinate of the piece
+     */
+    public void update(final Piece piece, final int x, final int y)
+    {
+        List<Piece> current = getCell(piece.getX(), piece.getY());
+        List<Piece> next    = getCell(x, y);
+        
+        if (current != next)
+        {
+            current.remove(piece);
+            next.add(piece);
+        }
+    }
+    
+    /**
+     * Get the pieces that may contain the given point.
+     * @param x x-coordinate
+     * @param y y-coordinate
+     * @param result The list the pieces will be added to, the list is cleared first
+     * @return List<Piece>
+     */
+    public List<Piece> getPieces(final int x, final int y, final List<Piece> result)
+    {
+        result.clear();
+        
+        //a piece containing the point has its x,y within 1 piece up/left of the point
+        addPieces(getCol(x - cellWidth + 1), getRow(y - cellHeight + 1), getCol(x), getRow(y), result);
+        
+        return result;
+    }
+    
+    private void addPieces(final int startCol, final int startRow, final int endCol, final int endRow, final List<Piece> result)
+    {
+        for (int row = startRow; row <= endRow; row++)
+        {
+            for (int col = startCol; col <= endCol; col++)
+            {
+                final List<Piece> cell = cells.get((row * cols) + col);
+                
+                //add each piece instead of addAll() which creates a copy of the cell
+                for (int i=0; i < cell.size(); i++)
+                {
+                    result.add(cell.get(i));
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The location of every piece copied from the board for the snapshots.
+ * The arrays are re-used once the puzzle has moved on to newer locations
+ * and every snapshot published with them has been released.
+ * @author GOD
+ */
+final class PieceLocations
+{
+    //location of each piece by id
+    final int[] x, y;
+    
+    //the puzzle while these are its latest locations and every published snapshot using them
+    private final AtomicInteger users = new AtomicInteger();
+    
+    PieceLocations(final int count)
+    {
+        this.x = new int[count];
+        this.y = new int[count];
+    }
+    
+    void retain()
+    {
+        users.incrementAndGet();
+    }
+    
+    void release()
+    {
+        users.decrementAndGet();
+    }
+    
+    /**
+     * Can the arrays be changed, nothing that may be drawn is using them
+     * @return boolean
+     */
+    boolean isFree()
+    {
+        return (users.get() == 0);
+    }
+}
@@ -1,24 +1,26 @@
 package com.gamesbykevin.puzzle2.objects;
 
-import com.gamesbykevin.framework.base.Cell;
 import com.gamesbykevin.framework.input.Mouse;
 import com.gamesbykevin.framework.resources.Progress;
 import com.gamesbykevin.framework.util.TimerCollection;
 
 import com.gamesbykevin.puzzle2.ai.*;
+import com.gamesbykevin.puzzle2.shared.DirtyRegion;
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
 
 import java.awt.*;
-import java.awt.image.*;
+import java.awt.image.BufferedImage;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 
 public class Puzzle 
 {
     private List<Piece> pieces;
-    private Image image;    //entire image before cut
     
-    //this is the extra width and height on each puzzle piece
-    private int extraW, extraH;
+    //the cut image of every puzzle piece, this may be shared with other puzzles
+    private final CutSheet sheet;
     
     //entire puzzle dimensions
     private int puzzleWidth, puzzleHeight;
@@ -41,6 +43,9 @@ public class Puzzle
     //computer element that solves the puzzle
     private ArtificialIntelligence ai;
     
+    //random numbers for this puzzle only so the same seed scrambles the same way
+    private final SplitRandom random;
+    
     //how much time has passed
     private TimerCollection timers;
     
@@ -63,58 +68,115 @@ public class Puzzle
     //what place did this object come in
     private int place = -1;
     
+    //the values of every piece stored by the id of the piece
+    private final Board board;
+    
+    //the pieces that have been connected together
+    private final Clusters clusters;
+    
+    //the col, row offsets of the pieces that can connect to a piece
+    private static final int[][] NEIGHBORS = {{0, -1}, {0, 1}, {1, 0}, {-1, 0}};
+    
+    //location of every piece so we only check the pieces nearby
+    private PieceGrid grid;
+    
+    //the progress description last drawn and the area it was drawn in, only used by the thread drawing the puzzle
+    private String progressDesc = "";
+    private final Rectangle progressArea = new Rectangle();
+    
+    //image of every piece except the selected piece, so the pieces that aren't moving are drawn as 1 image,
+    //the layer is only used by the thread drawing the puzzle
+    private BufferedImage layer;
+    
+    //the area of the screen the layer covers
+    private final Rectangle layerArea = new Rectangle();
+    
+    //the draw order the layer was drawn for, the layer is drawn again when the order changes
+    private int[] layerOrder;
+    
+    //the location of every piece for the snapshots and the version of the board they were copied from
+    private PieceLocations snapshotLocations;
+    private int snapshotVersion;
+    
+    //every location array created for the snapshots, they are re-used once they are free
+    private final List<PieceLocations> locations = new ArrayList<>();
+    
+    //the ids of the pieces in the order they are drawn for the snapshots, null when it needs to be created again
+    private int[] drawOrder;
+    
+    //the selected piece when the order was created
+    private Piece drawOrderSelected;
+    
+    //the last snapshot created
+    private PuzzleSnapshot snapshot;
+    
+    //the timers are displayed to the second, so the descriptions are only created again once a second
+    static final long TIMER_RESOLUTION = TimerCollection.toNanoSeconds(1000L);
+    
+    //the time that passes each update
+    private final long timeDeduction;
+    
+    //the time the game timer has counted and the time allowed in time attack
+    private long gameTime = 0;
+    private final long gameTimeLimit;
+    
+    //the last progress description created and the place and time displayed in it
+    private String desc;
+    private int descPlace;
+    private long descTime;
+    
+    //list of pieces found in the grid, re-used for every check
+    private final List<Piece> candidates = new ArrayList<>();
+    
+    //the order the pieces are in the list which is also the order they are drawn
+    private final Comparator<Piece> order = new Comparator<Piece>()
+    {
+        @Override
+        public int compare(Piece piece1, Piece piece2)
+        {
+            return getIndex(piece1) - getIndex(piece2);
+        }
+    };
+    
     public enum TimerKey
     {
         Game, CpuMove, Scramble
     }
     
-    private Cutter.PuzzleCut puzzleCut;
+    public Puzzle(CutSheet sheet, Rectangle screen, long timeDeduction, int gameTypeIndex, int difficultyIndex)
+    {
+        this(sheet, screen, timeDeduction, gameTypeIndex, difficultyIndex, new SplitRandom());
+    }
     
-    public Puzzle(Image image, int rows, int cols, Rectangle screen, long timeDeduction, int gameTypeIndex, int difficultyIndex, int puzzleCutIndex)
+    public Puzzle(CutSheet sheet, Rectangle screen, long timeDeduction, int gameTypeIndex, int difficultyIndex, SplitRandom random)
     {
+        this.sheet = sheet;
+        this.random = random;
         this.screen = screen;
-        this.puzzleCut = Cutter.PuzzleCut.values()[puzzleCutIndex];
         this.difficultyIndex = difficultyIndex;
         this.gameTypeIndex = gameTypeIndex;
         
-        //if image is bigger than the window resize image 
-        if (image.getWidth(null) >= screen.width || image.getHeight(null) >= screen.height)
-        {
-            //assume puzzle image has same width and height
-            int maxDim = screen.width;
-            
-            if (screen.width > screen.height)
-                maxDim = screen.height;
-            
-            //puzzle image will be 75% of screen size
-            int bothDim = (int)(maxDim * .75);
-            
-            BufferedImage resizedImage = new BufferedImage(bothDim, bothDim, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = resizedImage.createGraphics();
-            g.drawImage(image, 0, 0, bothDim, bothDim, null);
-            g.dispose();
-            
-            this.image = resizedImage;
-        }
-        else
-        {
-            //image was not bigger so resize is not needed
-            this.image = image;
-        }
+        //set number of rows/cols
+        this.rows = sheet.getRows();
+        this.cols = sheet.getCols();
         
         timers = new TimerCollection(timeDeduction);
         
+        this.timeDeduction = timeDeduction;
+        
         //time attack
         if (gameTypeIndex == 1)
         {
             long reset = ArtificialIntelligence.getDifficultyDelay(ArtificialIntelligence.Difficulty.values()[difficultyIndex]);
             reset *= (rows * cols);
             timers.add(TimerKey.Game, reset);
+            gameTimeLimit = reset;
         }
         else
         {
             //race
             timers.add(TimerKey.Game);
+            gameTimeLimit = 0;
         }
         
         //scramble for 1 second
@@ -123,97 +185,25 @@ public class Puzzle
         
         pieces = new ArrayList<>();
         
-        //width of each puzzle piece
-        int width  = (int)(this.image.getWidth(null) / cols);
-        
-        //height of each puzzle piece
-        int height = (int)(this.image.getHeight(null) / rows);
-        
         //entire puzzle width
-        puzzleWidth = this.image.getWidth(null);
+        puzzleWidth = sheet.getImage().getWidth(null);
         
         //entire puzzle height
-        puzzleHeight = this.image.getHeight(null);
-        
-        //calculate extra width and height
-        this.extraW = (int)(width * EXTRA_RATIO);
-        this.extraH = (int)(height * EXTRA_RATIO);
-        
-        //set number of rows/cols
-        this.rows = rows;
-        this.cols = cols;
+        puzzleHeight = sheet.getImage().getHeight(null);
         
         //create new progress tracker
         cuttingProgress = new Progress(rows * cols);
         
+        //create a piece for every col, row
+        board = new Board(sheet);
+        
+        clusters = board.getClusters();
+        
         for (int col=0; col < cols; col++)
         {
             for (int row=0; row < rows; row++)
             {
-                int x = (col * width); //  + screen.x;
-                int y = (row * height);// + screen.y;
-                
-                int totalWidth  = width  + (extraW * 2);
-                int totalHeight = height + (extraH * 2);
-                
-                Rectangle puzzlePieceArea = new Rectangle(x - extraW, y - extraH, totalWidth, totalHeight);
-                
-                Piece piece = new Piece();
-                piece.setCol(col);
-                piece.setRow(row);
-                piece.setLocation(puzzlePieceArea.x, puzzlePieceArea.y);
-                piece.setDimensions(puzzlePieceArea.width, puzzlePieceArea.height);
-                
-                //set original dimensions for later when we keep connected pieces aligned
-                piece.setOriginalWidth(width);
-                piece.setOriginalHeight(height);
-                
-                Piece ppNorth = getPiece(col, row - 1);
-                Piece ppSouth = getPiece(col, row + 1);
-                Piece ppEast = getPiece(col + 1, row);
-                Piece ppWest = getPiece(col - 1, row);
-                
-                if (ppNorth != null)
-                {
-                    piece.setNorthMale(!ppNorth.hasSouthMale());
-                }
-                else
-                {
-                    if (row > 0) //if not the top row and north is not set
-                        piece.setNorthMale(Math.random() > .5);
-                }
-                
-                if (ppSouth != null)
-                {
-                    piece.setSouthMale(!ppSouth.hasNorthMale());
-                }
-                else
-                {
-                    if (row < rows - 1) //if not the bottom row and south is not set
-                        piece.setSouthMale(Math.random() > .5);
-                }
-                
-                if (ppEast != null)
-                {
-                    piece.setEastMale(!ppEast.hasWestMale());
-                }
-                else
-                {
-                    if (col < cols - 1) //if not the last col and east is not set
-                        piece.setEastMale(Math.random() > .5);
-                }
-                
-                if (ppWest != null)
-                {
-                    piece.setWestMale(!ppWest.hasEastMale());
-                }
-                else
-                {
-                    if (col > 0) //if not the first col and west is not set
-                        piece.setWestMale(Math.random() > .5);
-                }
-                
-                pieces.add(piece);
+                pieces.add(board.getPiece(sheet.getIndex(col, row)));
             }
         }
     }
@@ -230,17 +220,22 @@ public class Puzzle
     
     public Cutter.PuzzleCut getPuzzleCut()
     {
-        return puzzleCut;
+        return sheet.getPuzzleCut();
+    }
+    
+    public CutSheet getCutSheet()
+    {
+        return sheet;
     }
     
     public int getExtraWidth()
     {
-        return extraW;
+        return sheet.getExtraWidth();
     }
     
     public int getExtraHeight()
     {
-        return extraH;
+        return sheet.getExtraHeight();
     }
     
     public int getCols()
@@ -265,7 +260,7 @@ public class Puzzle
     
     public Image getImage()
     {
-        return image;
+        return sheet.getImage();
     }
     
     public boolean isCuttingComplete()
@@ -282,37 +277,40 @@ public class Puzzle
     {
         if (!isCuttingComplete())
         {
-            //get puzzle piece
-            Piece tmp = pieces.get(cuttingProgress.getCurrentCount());
-
-            //cut image for puzzle piece
-            tmp = Cutter.createPiece(this, tmp);
-
-            //set puzzle piece after cut image has been set
-            setPiece(cuttingProgress.getCurrentCount(), tmp);
-
-            cuttingProgress.increaseProgress();
+            //if the pieces are already being cut for another puzzle this will do nothing
+            sheet.startCutting();
+            
+            //count the puzzle pieces that have finished cutting
+            final int count = sheet.getCutCount(cuttingProgress.getCurrentCount());
+            
+            while (cuttingProgress.getCurrentCount() < count)
+            {
+                //the piece can be drawn now that it has been cut
+                pieces.get(cuttingProgress.getCurrentCount()).setCutSheet(sheet);
+                
+                cuttingProgress.increaseProgress();
+            }
             
             //if cutting is complete place all pieces in the center
             if (isCuttingComplete())
             {
-                List<Cell> cells = new ArrayList<>();
+                List<Piece> cells = new ArrayList<>();
                 
                 for (Piece piece : pieces)
                 {
                     final int middleX = screen.x + (screen.width / 2) - (piece.getWidth()  / 2);
                     final int middleY = screen.y + (screen.height/ 2) - (piece.getHeight() / 2);
                     piece.setLocation(middleX, middleY);
-                    piece.setOriginalLocation(piece.getPoint());
-                    cells.add(piece.getCell());
+                    piece.setOriginalLocation(middleX, middleY);
+                    cells.add(piece);
                 }
                 
                 //assign start col, row
                 for (Piece piece : pieces)
                 {
                     //get random cell from list and assign it to piece
-                    final int rand = (int)(Math.random() * cells.size());
-                    piece.setStartCell(cells.get(rand));
+                    final int rand = random.nextInt(cells.size());
+                    piece.setStartCell(cells.get(rand).getCol(), cells.get(rand).getRow());
                     cells.remove(rand);
                 }
             }
@@ -325,34 +323,47 @@ public class Puzzle
                 
                 for (Piece piece : pieces)
                 {
-                    Point start       = piece.getOriginalLocation();
-                    Point destination = getStartDestination(piece);
-                    
-                    int xDiff = start.x - destination.x;
-                    int yDiff = start.y - destination.y;
+                    int xDiff = piece.getOriginalX() - getStartDestinationX(piece);
+                    int yDiff = piece.getOriginalY() - getStartDestinationY(piece);
 
-                    int x = destination.x;
-                    int y = destination.y;
+                    int x = getStartDestinationX(piece);
+                    int y = getStartDestinationY(piece);
 
                     if (timers.getTimer(TimerKey.Scramble).getProgress() < 1)
                     {
-                        x = start.x - (int)(xDiff * timers.getTimer(TimerKey.Scramble).getProgress());
-                        y = start.y - (int)(yDiff * timers.getTimer(TimerKey.Scramble).getProgress());
+                        x = piece.getOriginalX() - (int)(xDiff * timers.getTimer(TimerKey.Scramble).getProgress());
+                        y = piece.getOriginalY() - (int)(yDiff * timers.getTimer(TimerKey.Scramble).getProgress());
                     }
                     else
                     {
                         this.scramblingComplete = true;
-                        piece.setOriginalLocation(piece.getPoint());
+                        piece.setOriginalLocation(piece.getX(), piece.getY());
                     }
 
-                    piece.setLocation(new Point(x, y));
+                    piece.setLocation(x, y);
+                }
+                
+                //now that the pieces are in place keep track of their location
+                if (isScramblingComplete())
+                {
+                    grid = new PieceGrid(screen, sheet.getPieceWidth(), sheet.getPieceHeight());
+                    
+                    for (Piece piece : pieces)
+                    {
+                        grid.add(piece);
+                    }
+                    
+                    board.setPieceGrid(grid);
                 }
             }
             else
             {
                 if (!hasGameOver())
                 {
-                    timers.update();
+                    //update each timer by key so no iterator is created every frame, scrambling is already finished
+                    timers.update(TimerKey.Game);
+                    timers.update(TimerKey.CpuMove);
+                    gameTime += timeDeduction;
                     
                     //if time attack mode make sure timer doesnt go negative
                     if (gameTypeIndex == 1)
@@ -368,7 +379,7 @@ public class Puzzle
                     if (hasAutoSolve())
                     {
                         if (ai == null)
-                            ai = new ArtificialIntelligence(this, ArtificialIntelligence.Difficulty.values()[difficultyIndex]);
+                            ai = new ArtificialIntelligence(this, ArtificialIntelligence.Difficulty.values()[difficultyIndex], random.split());
 
                         ai.solve(this);
                     }
@@ -387,21 +398,19 @@ public class Puzzle
                             //if dragging mouse move puzzle piece appropriately
                             if (mouse.isMouseDragged())
                             {
-                                Point tmp = new Point(mouse.getLocation());
-                                tmp.x -= (getPiece().getWidth()  / 2);
-                                tmp.y -= (getPiece().getHeight() / 2);
+                                final int x = mouse.getLocation().x - (getPiece().getWidth()  / 2);
+                                final int y = mouse.getLocation().y - (getPiece().getHeight() / 2);
                                 
-                                getPiece().setNewPosition(tmp);
+                                getPiece().setNewPosition(x, y);
                             }
 
                             //if mouse released reset current puzzle piece selected
                             if (mouse.isMouseReleased())
                             {
-                                Point tmp = new Point(mouse.getLocation());
-                                tmp.x -= (getPiece().getWidth()  / 2);
-                                tmp.y -= (getPiece().getHeight() / 2);
+                                final int x = mouse.getLocation().x - (getPiece().getWidth()  / 2);
+                                final int y = mouse.getLocation().y - (getPiece().getHeight() / 2);
                                 
-                                checkMatch(tmp);
+                                checkMatch(x, y);
                                 resetSelectedPieceIndex();
                                 hasGameOver();
                                 mouse.resetMouseEvents();
@@ -416,7 +425,7 @@ public class Puzzle
     public float getProgress()
     {
         double total = rows * cols;
-        double progress = total - (pieces.size() - 1);
+        double progress = total - (clusters.getCount() - 1);
         
         if (progress < 0)
             progress = 0;
@@ -426,18 +435,32 @@ public class Puzzle
     
     public Point getStartDestination(final Piece piece)
     {
-        int x = screen.x + (int)(screen.width  * .4)  - (puzzleWidth  / 2) + (piece.getStartCell().getCol() * piece.getWidth());
-        int y = screen.y + (int)(screen.height * .35) - (puzzleHeight / 2) + (piece.getStartCell().getRow() * piece.getHeight());
-
-        return new Point(x, y);
+        return new Point(getStartDestinationX(piece), getStartDestinationY(piece));
+    }
+    
+    public int getStartDestinationX(final Piece piece)
+    {
+        return screen.x + (int)(screen.width  * .4)  - (puzzleWidth  / 2) + (piece.getStartCol() * piece.getWidth());
+    }
+    
+    public int getStartDestinationY(final Piece piece)
+    {
+        return screen.y + (int)(screen.height * .35) - (puzzleHeight / 2) + (piece.getStartRow() * piece.getHeight());
     }
 
     public Point getDestination(final Piece piece)
     {
-        int x = screen.x + (screen.width  / 2) - (puzzleWidth  / 2) + (piece.getCol() * piece.getOriginalWidth());
-        int y = screen.y + (screen.height / 2) - (puzzleHeight / 2) + (piece.getRow() * piece.getOriginalHeight());
-
-        return new Point(x, y);
+        return new Point(getDestinationX(piece), getDestinationY(piece));
+    }
+    
+    public int getDestinationX(final Piece piece)
+    {
+        return screen.x + (screen.width  / 2) - (puzzleWidth  / 2) + (piece.getCol() * piece.getOriginalWidth());
+    }
+    
+    public int getDestinationY(final Piece piece)
+    {
+        return screen.y + (screen.height / 2) - (puzzleHeight / 2) + (piece.getRow() * piece.getOriginalHeight());
     }
     
     public void setGameOver(final boolean gameOver)
@@ -453,7 +476,7 @@ public class Puzzle
     public boolean hasGameOver()
     {
         if (!gameOver)
-            setGameOver(pieces.size() == 1);
+            setGameOver(clusters.isComplete());
         
         return gameOver;
     }
@@ -476,38 +499,112 @@ public class Puzzle
     /**
      * Checks to see if the current piece selected has connected to another
      * 
-     * @param mouseLocation 
+     * @param x x-coordinate of the selected piece
+     * @param y y-coordinate of the selected piece
      */
-    private void checkMatch(final Point mouseLocation)
+    void checkMatch(final int x, final int y)
     {
         //get the current selected piece
         Piece piece = getPiece();
-
-        for (int i=0; i < pieces.size(); i++)
+        
+        //get piece that matches
+        Piece tmp = getMatch(piece);
+        
+        //if the piece selected matches the tmp Piece we need to combine the two together
+        if (tmp != null)
         {
-            if (i == getSelectedPieceIndex())
+            final int index = getPieceIndex(tmp);
+            
+            //add piece matching to child
+            piece.add(tmp, x, y);
+            setPiece(getSelectedPieceIndex(), piece);
+            
+            //remove puzzle piece after adding as a child
+            removePiece(index);
+            
+            //the piece matched is now part of the selected piece
+            invalidateOrder();
+            
+            //play snap sound effect
+            this.setPlaySound(true);
+        }
+    }
+    
+    /**
+     * Get the piece that connects to the given piece or any of its children. 
+     * A piece can only connect to the pieces next to it by col, row so those
+     * are the only pieces checked. If more than one piece connects the piece 
+     * first in the list is returned.
+     * @param piece The piece we want to check
+     * @return Piece the piece that connects, null if no piece connects
+     */
+    private Piece getMatch(final Piece piece)
+    {
+        Piece match = getMatch(piece, piece, null);
+        
+        for (Piece child = piece.getNext(); child != piece; child = child.getNext())
+        {
+            match = getMatch(piece, child, match);
+        }
+        
+        return match;
+    }
+    
+    /**
+     * Check the pieces next to the given member of a piece
+     * @param piece The piece we want to check
+     * @param member The piece or one of its children
+     * @param match The current match, null if no match has been found yet
+     * @return Piece the piece that connects, null if no piece connects
+     */
+    private Piece getMatch(final Piece piece, final Piece member, Piece match)
+    {
+        for (int i=0; i < NEIGHBORS.length; i++)
+        {
+            final int col = member.getCol() + NEIGHBORS[i][0];
+            final int row = member.getRow() + NEIGHBORS[i][1];
+            
+            if (col < 0 || col >= cols || row < 0 || row >= rows)
                 continue;
-
-            //get piece we want to test
-            Piece tmp = pieces.get(i);
-
-            //if the piece selected matches the tmp Piece we need to combine the two together
-            if (piece.intersects(tmp) || piece.intersectsChild(tmp))
-            {
-                //add piece matching to child
-                piece.add(tmp, mouseLocation);
-                setPiece(getSelectedPieceIndex(), piece);
-
-                //remove puzzle piece after adding as a child
-                removePiece(i);
-
-                //play snap sound effect
-                this.setPlaySound(true);
-                
-                //selected piece has been matched exit loop
-                break;
-            }
+            
+            final Piece neighbor = board.getPiece(sheet.getIndex(col, row));
+            
+            //the neighbor is already connected
+            if (clusters.isConnected(neighbor.getId(), member.getId()))
+                continue;
+            
+            //a piece earlier in the list has already matched
+            if (match != null && getIndex(neighbor.getRoot()) >= getIndex(match))
+                continue;
+            
+            if (member.intersects(neighbor))
+                match = neighbor.getRoot();
         }
+        
+        return match;
+    }
+    
+    /**
+     * Get the index of the piece in the puzzle when it was created.
+     * Pieces are never re-ordered in the list so this is also the draw order.
+     * @param piece
+     * @return int
+     */
+    private int getIndex(final Piece piece)
+    {
+        return sheet.getIndex(piece.getCol(), piece.getRow());
+    }
+    
+    /**
+     * Get the current index of the piece in our pieces list
+     * @param piece
+     * @return int index, -1 if the piece is not in the list
+     */
+    private int getPieceIndex(final Piece piece)
+    {
+        final int index = Collections.binarySearch(pieces, piece, order);
+        
+        return (index >= 0) ? index : -1;
     }
     
     public List<Piece> getPieces()
@@ -517,16 +614,10 @@ public class Puzzle
     
     public void removePiece(Piece piece)
     {
-        for (int i=0; i < pieces.size(); i++)
-        {
-            Piece tmp = pieces.get(i);
-            
-            if (tmp.getCol() == piece.getCol() && tmp.getRow() == piece.getRow())
-            {
-                removePiece(i);
-                break;
-            }
-        }        
+        final int index = getPieceIndex(piece);
+        
+        if (index >= 0)
+            removePiece(index);
     }
     
     public void removePiece(final int index)
@@ -542,26 +633,29 @@ public class Puzzle
             
             boolean exit = false;
             
-            for (int x=0; x < pieces.size(); x++)
+            Piece p2 = getMatch(p1);
+            
+            while (p2 != null)
             {
-                if (i == x)
-                    continue;
+                final int x = getPieceIndex(p2);
                 
-                Piece p2 = pieces.get(x);
+                //add to child
+                p1.add(p2);
                 
-                if (p1.intersects(p2) || p1.intersectsChild(p2))
-                {
-                    //add to child
-                    p1.add(p2);
-                    setPiece(i, p1);
-                    
-                    //remove piece since it has been added as child
-                    removePiece(x);
-                    x--;
-                    
-                    //loop through existing pieces for any other merges
-                    exit = true;
-                }
+                //remove piece since it has been added as child
+                removePiece(x);
+                
+                invalidateOrder();
+                
+                if (x < i)
+                    i--;
+                
+                setPiece(i, p1);
+                
+                //loop through existing pieces for any other merges
+                exit = true;
+                
+                p2 = getMatch(p1);
             }
             
             if (exit)   //if merges were found exit
@@ -590,49 +684,92 @@ public class Puzzle
      */
     public void setSelectedPieceIndex(final int currentPieceIndex)
     {
+        if (this.currentPieceIndex == currentPieceIndex)
+            return;
+        
+        //the selected piece is drawn on top so it needs to be drawn again when it changes
+        addDamage(this.currentPieceIndex);
+        
         this.currentPieceIndex = currentPieceIndex;
+        
+        addDamage(this.currentPieceIndex);
     }
     
     /**
-     * Set the selected piece based on the mouse location.
-     * If multiple pieces are at the same location
-     * the piece drawn last on the screen will be the piece selected.
-     * @param mousePoint x,y coordinate location of mouse
+     * Mark the piece at the index and the pieces connected to it as changed
+     * @param index 
      */
-    private void setSelectedPiece(final Point mousePoint)
+    private void addDamage(final int index)
     {
-        //start witht the last piece in the collection because that will be the piece drawn on top
-        for (int i = pieces.size() - 1; i >= 0; i--)
+        //the index may be out of range if a piece was removed
+        if (index < 0 || index >= pieces.size())
+            return;
+        
+        final Piece piece = pieces.get(index);
+        
+        board.addDamage(piece.getId());
+        
+        for (Piece child = piece.getNext(); child != piece; child = child.getNext())
         {
-            Piece piece = pieces.get(i);
-            
-            if (piece.getRectangle().contains(mousePoint) || piece.hasChild(mousePoint))
-            {
-                //set the index of the selected piece
-                setSelectedPieceIndex(i);
-                
-                //set the index of the child piece if a child piece was selected
-                piece.setSelectedPieceIndex(mousePoint);
-                break;
-            }
+            board.addDamage(child.getId());
         }
     }
     
     /**
-     * Returns the puzzle piece at the given col, row
-     * @param col
-     * @param row
-     * @return Piece
+     * Add the areas of this puzzle that have changed since the last time this was called
+     * @param region The areas of the screen that need to be drawn again
+     */
+    public void addDirtyRegion(final DirtyRegion region)
+    {
+        board.getDamage(region);
+    }
+    
+    /**
+     * Add the areas of this puzzle that change when the snapshot is drawn.
+     * This is called by the thread drawing the puzzle because it checks against what was last drawn.
+     * @param region The areas of the screen that need to be drawn again
+     * @param snapshot The snapshot that will be drawn
      */
-    private Piece getPiece(final int col, final int row)
+    public void addDirtyRegion(final DirtyRegion region, final PuzzleSnapshot snapshot)
     {
-        for (Piece piece : pieces)
+        //the description changes as time passes
+        if (!snapshot.getDesc().equals(progressDesc))
+            region.add(progressArea);
+    }
+    
+    /**
+     * Set the selected piece based on the mouse location.
+     * If multiple pieces are at the same location
+     * the piece drawn last on the screen will be the piece selected.
+     * @param mousePoint x,y coordinate location of mouse
+     */
+    void setSelectedPiece(final Point mousePoint)
+    {
+        Piece selected = null;
+        
+        //only check the pieces near the mouse
+        grid.getPieces(mousePoint.x, mousePoint.y, candidates);
+        
+        for (int i=0; i < candidates.size(); i++)
         {
-            if (piece.equals(col, row))
-                return piece;
+            final Piece piece = candidates.get(i);
+            
+            if (!piece.contains(mousePoint.x, mousePoint.y))
+                continue;
+            
+            //the piece last in the collection will be the piece drawn on top
+            if (selected == null || getIndex(piece.getRoot()) > getIndex(selected))
+                selected = piece.getRoot();
         }
         
-        return null;
+        if (selected != null)
+        {
+            //set the index of the selected piece
+            setSelectedPieceIndex(getPieceIndex(selected));
+            
+            //set the index of the child piece if a child piece was selected
+            selected.setSelectedPiece(mousePoint.x, mousePoint.y);
+        }
     }
     
     /**
@@ -652,28 +789,225 @@ public class Puzzle
         pieces.set(i, piece);
     }
     
+    /**
+     * The pieces have merged so the order they are drawn needs to be created again,
+     * which will also draw the layer again
+     */
+    private void invalidateOrder()
+    {
+        this.drawOrder = null;
+    }
+    
+    /**
+     * Get a snapshot of what the puzzle looks like now that can be drawn on another thread.
+     * The locations and draw order are only copied when they have changed, 
+     * if nothing has changed the previous snapshot is returned.
+     * @return PuzzleSnapshot
+     */
+    public PuzzleSnapshot getSnapshot()
+    {
+        //different arrays are needed because the previous snapshots can't change while they may be drawn
+        if (snapshotLocations == null || snapshotVersion != board.getVersion())
+        {
+            final PieceLocations next = getFreeLocations();
+            next.retain();
+            board.copyLocations(next.x, next.y);
+            
+            if (snapshotLocations != null)
+                snapshotLocations.release();
+            
+            snapshotLocations = next;
+            snapshotVersion = board.getVersion();
+        }
+        
+        final Piece selected = getPiece();
+        
+        if (drawOrder == null || drawOrderSelected != selected)
+        {
+            drawOrder = new int[board.getCount()];
+            
+            int index = 0;
+            
+            //the selected piece is drawn last so it appears on top of others
+            for (int i=0; i < pieces.size(); i++)
+            {
+                if (pieces.get(i) != selected)
+                    index = addOrder(pieces.get(i), index);
+            }
+            
+            if (selected != null)
+                addOrder(selected, index);
+            
+            drawOrderSelected = selected;
+        }
+        
+        final float progress = cuttingProgress.getProgress();
+        final String desc = getProgressDesc();
+        
+        if (snapshot == null || !snapshot.isMatch(snapshotLocations, drawOrder, progress, isScramblingComplete(), desc))
+        {
+            final int start = (selected == null) ? drawOrder.length : drawOrder.length - clusters.getSize(selected.getId());
+            
+            snapshot = new PuzzleSnapshot(this, snapshotLocations, drawOrder, start, progress, isCuttingComplete(), isScramblingComplete(), desc);
+        }
+        
+        return snapshot;
+    }
+    
+    /**
+     * Get location arrays that no snapshot that may be drawn is using.
+     * Only a few are ever created, the latest locations, the snapshot 
+     * waiting to be drawn and the snapshot last drawn which is kept to paint the window again.
+     * @return PieceLocations
+     */
+    private PieceLocations getFreeLocations()
+    {
+        for (int i=0; i < locations.size(); i++)
+        {
+            if (locations.get(i).isFree())
+                return locations.get(i);
+        }
+        
+        final PieceLocations free = new PieceLocations(board.getCount());
+        locations.add(free);
+        
+        return free;
+    }
+    
+    /**
+     * Add the piece and the pieces connected to it to the draw order
+     * @param piece
+     * @param index The index in the draw order to add the pieces
+     * @return int The index after the pieces that were added
+     */
+    private int addOrder(final Piece piece, int index)
+    {
+        drawOrder[index++] = piece.getId();
+        
+        for (Piece child = piece.getNext(); child != piece; child = child.getNext())
+        {
+            drawOrder[index++] = child.getId();
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Draw every piece except the selected piece to the layer.
+     * @param snapshot The snapshot being drawn
+     */
+    private void drawLayer(final PuzzleSnapshot snapshot)
+    {
+        final int[] order = snapshot.getOrder();
+        
+        //the layer covers every piece, pieces can be moved outside of the screen
+        int x1 = screen.x, y1 = screen.y, x2 = screen.x + screen.width, y2 = screen.y + screen.height;
+        
+        for (int id=0; id < order.length; id++)
+        {
+            x1 = Math.min(x1, snapshot.getX(id));
+            y1 = Math.min(y1, snapshot.getY(id));
+            x2 = Math.max(x2, snapshot.getX(id) + board.getWidth());
+            y2 = Math.max(y2, snapshot.getY(id) + board.getHeight());
+        }
+        
+        layerArea.setBounds(x1, y1, x2 - x1, y2 - y1);
+        
+        //only create a new image when the existing image is too small
+        if (layer == null || layer.getWidth() < layerArea.width || layer.getHeight() < layerArea.height)
+        {
+            final int width  = (layer == null) ? layerArea.width  : Math.max(layer.getWidth(),  layerArea.width);
+            final int height = (layer == null) ? layerArea.height : Math.max(layer.getHeight(), layerArea.height);
+            
+            layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        
+        Graphics2D g2d = layer.createGraphics();
+        
+        //clear what was previously drawn
+        g2d.setComposite(AlphaComposite.Clear);
+        g2d.fillRect(0, 0, layer.getWidth(), layer.getHeight());
+        g2d.setComposite(AlphaComposite.SrcOver);
+        
+        g2d.translate(-layerArea.x, -layerArea.y);
+        
+        drawPieces(g2d, null, snapshot, 0, snapshot.getSelected());
+        
+        g2d.dispose();
+        
+        this.layerOrder = order;
+    }
+    
+    /**
+     * Draw the pieces in the draw order from start up to end
+     * @param g
+     * @param clip Only the pieces within this area are drawn, if null every piece is drawn
+     * @param snapshot The snapshot being drawn
+     * @param start
+     * @param end 
+     */
+    private void drawPieces(final Graphics g, final Rectangle clip, final PuzzleSnapshot snapshot, final int start, final int end)
+    {
+        final int[] order = snapshot.getOrder();
+        
+        for (int i=start; i < end; i++)
+        {
+            final int x = snapshot.getX(order[i]);
+            final int y = snapshot.getY(order[i]);
+            
+            if (clip != null && !clip.intersects(x, y, board.getWidth(), board.getHeight()))
+                continue;
+            
+            sheet.drawPiece(g, order[i], x, y);
+        }
+    }
+    
     public Graphics draw(Graphics g)
     {
-        if (!isCuttingComplete())
+        return draw(g, getSnapshot());
+    }
+    
+    /**
+     * Draw the puzzle as it was when the snapshot was created
+     * @param g
+     * @param snapshot
+     * @return Graphics
+     */
+    public Graphics draw(Graphics g, final PuzzleSnapshot snapshot)
+    {
+        if (!snapshot.isCuttingComplete())
         {
-            Progress.draw(g, screen, cuttingProgress.getProgress(), "Cutting Images");
+            Progress.draw(g, screen, snapshot.getCuttingProgress(), "Cutting Images");
         }
         else
         {
-            for (Piece piece : pieces)
-                piece.draw(g);
-
-            //draw selected piece last so it appears on top of others
-            if (hasSelectedPiece())
-                getPiece().draw(g);
+            //only the pieces within this area need to be drawn
+            final Rectangle clip = g.getClipBounds();
+            
+            if (snapshot.isScramblingComplete())
+            {
+                //the pieces that aren't moving only change when a piece is picked up, dropped or merged
+                if (layerOrder != snapshot.getOrder())
+                    drawLayer(snapshot);
+                
+                g.drawImage(layer, layerArea.x, layerArea.y, null);
+                
+                //draw selected piece last so it appears on top of others
+                drawPieces(g, clip, snapshot, snapshot.getSelected(), snapshot.getOrder().length);
+            }
+            else
+            {
+                //every piece moves while scrambling
+                drawPieces(g, clip, snapshot, 0, snapshot.getOrder().length);
+            }
 
-            drawPuzzleProgress(g);
+            drawPuzzleProgress(g, snapshot.getDesc());
         }
         
         return g;
     }
     
-    private Graphics drawPuzzleProgress(Graphics g)
+    private Graphics drawPuzzleProgress(Graphics g, final String desc)
     {
         Graphics2D g2d = (Graphics2D)g;
         Stroke defaultStroke = g2d.getStroke();
@@ -681,6 +1015,45 @@ public class Puzzle
         g2d.setStroke(stroke);
         g2d.setColor(Color.white);
         
+        if (hasAutoSolve())
+        {
+            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 8));
+        }
+        else
+        {
+            g2d.drawRect(screen.x, screen.y, screen.width, screen.height);
+            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 18));
+        }
+        
+        final int width = g2d.getFontMetrics().stringWidth(desc);
+        final int y = screen.y + (int)(g2d.getFontMetrics().getHeight() * 1.5);
+        
+        int x = screen.x + (screen.width/2) - (width/2);
+        g2d.drawString(desc, x, y);
+        g2d.setStroke(defaultStroke);
+        
+        //remember where the description was drawn so we know what to draw when it changes
+        progressDesc = desc;
+        progressArea.setBounds(Math.min(x, screen.x), screen.y, Math.max(width, screen.width), y - screen.y + g2d.getFontMetrics().getDescent());
+        
+        return (Graphics)g2d;
+    }
+    
+    /**
+     * Get the description of the progress that is displayed at the top of the puzzle,
+     * the last description is returned again until the place or the time displayed changes
+     * @return String
+     */
+    private String getProgressDesc()
+    {
+        final int place = (hasGameOver() && hasPlace()) ? this.place : 0;
+        
+        //the cpu doesn't display the time
+        final long time = (hasAutoSolve()) ? -1 : ((gameTypeIndex == 1) ? Math.max(0, gameTimeLimit - gameTime) : gameTime) / TIMER_RESOLUTION;
+        
+        if (this.desc != null && descPlace == place && descTime == time)
+            return this.desc;
+        
         String desc = "";
         
         if (hasGameOver() && hasPlace())
@@ -689,12 +1062,9 @@ public class Puzzle
         if (hasAutoSolve())
         {
             desc += " Cpu";
-            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 8));
         }
         else
         {
-            g2d.drawRect(screen.x, screen.y, screen.width, screen.height);
-            g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 18));
             desc += " Human ";
 
             //race
@@ -709,9 +1079,10 @@ public class Puzzle
             }
         }
         
-        int x = screen.x + (screen.width/2) - (g2d.getFontMetrics().stringWidth(desc)/2);
-        g2d.drawString(desc, x, screen.y + (int)(g2d.getFontMetrics().getHeight() * 1.5));
-        g2d.setStroke(defaultStroke);
-        return (Graphics)g2d;
+        this.desc = desc;
+        this.descPlace = place;
+        this.descTime = time;
+        
+        return desc;
     }
 }
\ No newline at end of file
@@ -0,0 +1,117 @@
+package com.gamesbykevin.puzzle2.objects;
+
+/**
+ * What a puzzle looks like at the end of an update. A snapshot is never
+ * changed while it is retained so it can be drawn on another thread
+ * while the puzzle continues to be updated.
+ * @author GOD
+ */
+public final class PuzzleSnapshot
+{
+    //the puzzle this is a snapshot of
+    private final Puzzle puzzle;
+    
+    //location of each piece by id, shared with the next snapshots until a piece moves
+    private final PieceLocations locations;
+    
+    //the ids of the pieces in the order they are drawn, shared until the selected piece changes or pieces merge
+    private final int[] order;
+    
+    //the index in order where the selected piece starts, the length of order if no piece is selected
+    private final int selected;
+    
+    //the progress of cutting the pieces, 1 when cutting is complete
+    private final float cuttingProgress;
+    
+    //is cutting complete
+    private final boolean cuttingComplete;
+    
+    //is scrambling the pieces complete
+    private final boolean scramblingComplete;
+    
+    //the description at the top of the puzzle
+    private final String desc;
+    
+    PuzzleSnapshot(final Puzzle puzzle, final PieceLocations locations, final int[] order, final int selected, final float cuttingProgress, final boolean cuttingComplete, final boolean scramblingComplete, final String desc)
+    {
+        this.puzzle = puzzle;
+        this.locations = locations;
+        this.order = order;
+        this.selected = selected;
+        this.cuttingProgress = cuttingProgress;
+        this.cuttingComplete = cuttingComplete;
+        this.scramblingComplete = scramblingComplete;
+        this.desc = desc;
+    }
+    
+    /**
+     * Does the snapshot match the given values
+     * @return boolean
+     */
+    boolean isMatch(final PieceLocations locations, final int[] order, final float cuttingProgress, final boolean scramblingComplete, final String desc)
+    {
+        return (this.locations == locations && this.order == order && this.cuttingProgress == cuttingProgress && this.scramblingComplete == scramblingComplete && this.desc.equals(desc));
+    }
+    
+    /**
+     * The snapshot has been published for another thread to draw,
+     * the locations are not re-used until the snapshot is released
+     */
+    public void retain()
+    {
+        locations.retain();
+    }
+    
+    /**
+     * The snapshot is no longer going to be drawn
+     */
+    public void release()
+    {
+        locations.release();
+    }
+    
+    public Puzzle getPuzzle()
+    {
+        return puzzle;
+    }
+    
+    public int getX(final int id)
+    {
+        return locations.x[id];
+    }
+    
+    public int getY(final int id)
+    {
+        return locations.y[id];
+    }
+    
+    public int[] getOrder()
+    {
+        return order;
+    }
+    
+    public int getSelected()
+    {
+        return selected;
+    }
+    
+    public float getCuttingProgress()
+    {
+        return cuttingProgress;
+    }
+    
+    public boolean isCuttingComplete()
+    {
+        return cuttingComplete;
+    }
+    
+    public boolean isScramblingComplete()
+    {
+        return scramblingComplete;
+    }
+    
+    public String getDesc()
+    {
+        return desc;
+    }
+}
\ No newline at end of file
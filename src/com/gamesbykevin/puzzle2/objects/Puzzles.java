@@ -1,32 +1,119 @@
 package com.gamesbykevin.puzzle2.objects;
 
 import com.gamesbykevin.framework.display.WindowHelper;
+import com.gamesbykevin.framework.input.Mouse;
 import com.gamesbykevin.framework.util.*;
 
 import com.gamesbykevin.puzzle2.main.*;
 import com.gamesbykevin.puzzle2.menu.GameMenu;
+import com.gamesbykevin.puzzle2.shared.DirtyRegion;
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+import com.gamesbykevin.puzzle2.shared.Workers;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Point;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public class Puzzles 
 {
+    //do we update the puzzles at the same time on the worker threads, if false they are updated one at a time
+    public static boolean PARALLEL_UPDATE = true;
+    
+    //do we pick the next image and cut the next puzzles during the countdown
+    public static boolean PREPARE_NEXT_ROUND = true;
+    
     //all the puzzles in the game
     private List<Puzzle> collection;
     
+    //the time counted down before the next puzzle
+    private static final long COUNTDOWN = TimerCollection.toNanoSeconds(6000L);
+    
     //timer we will use to countdown next puzzle
     private Timer timer;
     
+    //the time the countdown has counted, the countdown description is only created again when the time displayed changes
+    private long countdownTime;
+    
+    //the last countdown description created and the time displayed in it
+    private String countdown;
+    private long countdownDisplayed;
+    
+    //the last snapshots created, returned again while nothing drawn has changed
+    private PuzzleSnapshot[] snapshots;
+    private Snapshot snapshot;
+    
+    //puzzles with the same piece dimensions will share the cut masks
+    private final CutMaskCache cutMaskCache = new CutMaskCache();
+    
+    //puzzles with the same size share the resized image, this is kept for the next rounds
+    private final ScaledImageCache scaledImageCache = new ScaledImageCache();
+    
+    //the cut puzzle pieces saved for the next launch, null if they are always cut
+    private final CutSheetFileCache fileCache;
+    
+    //the cut images for the puzzles, puzzles with the same settings share a sheet
+    private List<CutSheet> sheets = new ArrayList<>();
+    
+    //does the entire screen need to be drawn because the puzzles have been reset
+    private boolean redraw = true;
+    
+    //the task that updates each puzzle, created when the puzzles are reset
+    private List<Callable<Void>> tasks;
+    
+    //the mouse the human player uses
+    private Mouse mouse;
+    
+    //every puzzle and cut sheet gets random numbers split from this
+    private final SplitRandom random;
+    
+    //the sheets for the next round being cut during the countdown, null if they haven't been started
+    private Future<List<CutSheet>> next;
+    
+    //the sheets the next round has started cutting so far, the list is locked while a sheet is added
+    private List<CutSheet> nextSheets;
+    
+    //have the puzzles been replaced, guarded by the lock of nextSheets
+    private boolean disposed = false;
+    
+    //the image for the next round
+    private Image nextImage;
+    
+    //the sheets cut during the countdown waiting to be used by the puzzles
+    private List<CutSheet> prepared = new ArrayList<>();
+    
     public Puzzles()
     {
-        
+        this(new SplitRandom(), null);
+    }
+    
+    /**
+     * @param seed The same seed will create the same puzzles and cpu moves
+     */
+    public Puzzles(final long seed)
+    {
+        this(new SplitRandom(seed), null);
+    }
+    
+    /**
+     * @param random Every image, puzzle and cpu move gets random numbers split from this
+     * @param fileCache The cut puzzle pieces saved for the next launch, null if they are always cut
+     */
+    public Puzzles(final SplitRandom random, final CutSheetFileCache fileCache)
+    {
+        this.random = random;
+        this.fileCache = fileCache;
     }
     
     public boolean isEveryPuzzleFinished()
@@ -35,8 +122,10 @@ public class Puzzles
             return false;
         
         //if game is finished and no place set
-        for (Puzzle puzzle : collection)
+        for (int i=0; i < collection.size(); i++)
         {
+            final Puzzle puzzle = collection.get(i);
+            
             if (puzzle == null)
                 return false;
             
@@ -47,80 +136,293 @@ public class Puzzles
         return true;
     }
     
-    public void reset(Engine engine)
+    public void reset(Engine engine) throws Exception
     {
-        this.timer = new Timer(TimerCollection.toNanoSeconds(6000L));
+        final int numPieces  = getNumPieces(engine);
+        final int numPlayers = getNumPlayers(engine);
+        
+        boolean humanPlayer = (engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Human) == 0);
         
-        int numPiecesIndex = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Pieces);
+        final int difficultyIndex = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Difficulty);
+        final int gameTypeIndex   = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Type);
+        final int puzzleCutIndex  = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.PuzzleCut);
         
-        final int numPieces;
+        final Image image;
         
-        switch (numPiecesIndex)
+        if (next != null)
+        {
+            //the image was picked and the sheets started cutting during the countdown
+            image = nextImage;
+            prepared = getNextRound();
+        }
+        else
+        {
+            image = engine.getResources().getGameImage(random);
+        }
+        
+        reset(image, engine.getMain().getScreen(), engine.getMain().getTimeDeductionPerFrame(), engine.getMouse(), numPieces, numPlayers, humanPlayer, difficultyIndex, gameTypeIndex, puzzleCutIndex);
+    }
+    
+    /**
+     * Get the number of pieces in each puzzle selected in the menu
+     */
+    private static int getNumPieces(final Engine engine)
+    {
+        switch (engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Pieces))
         {
             case 0:
-                numPieces = 16;
-                break;
+                return 16;
             case 1:
-                numPieces = 25;
-                break;
+                return 25;
             case 2:
-                numPieces = 36;
-                break;
+                return 36;
             case 3:
-                numPieces = 64;
-                break;
+                return 64;
             case 4:
-                numPieces = 100;
-                break;
+                return 100;
             case 5:
-                numPieces = 225;
-                break;
+                return 225;
             default:
-                numPieces = 9;
-                break;
+                return 9;
         }
-        
-        //what are the dimensions of each puzzle
-        int puzzleRows = (int)Math.sqrt(numPieces);
-        int puzzleCols = (int)Math.sqrt(numPieces);
-
-        boolean humanPlayer = (engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Human) == 0);
-        
-        final int difficultyIndex = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Difficulty);
-        final int gameTypeIndex   = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Type);
-        final int puzzleCutIndex  = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.PuzzleCut);
-        
-        final int numPlayersIndex = engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.NumPlayers);
-        
-        final int numPlayers;
-        
-        switch (numPlayersIndex)
+    }
+    
+    /**
+     * Get the number of puzzles selected in the menu
+     */
+    private static int getNumPlayers(final Engine engine)
+    {
+        switch (engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.NumPlayers))
         {
             case 0:
-                numPlayers = 1;
-                break;
+                return 1;
             case 1:
-                numPlayers = 2;
-                break;
+                return 2;
             case 2:
-                numPlayers = 4;
-                break;
+                return 4;
             case 3:
-                numPlayers = 6;
-                break;
+                return 6;
             case 4:
-                numPlayers = 9;
-                break;
+                return 9;
             case 5:
-                numPlayers = 12;
-                break;
+                return 12;
             default:
-                numPlayers = 1;
-                break;
+                return 1;
         }
+    }
+    
+    /**
+     * Pick the image for the next round and start cutting the sheets in the background
+     * while the countdown is shown, so the next round can start scrambling right away.
+     * The menu settings are read now, if they are different when the round starts
+     * the sheets that don't match are cut again.
+     * @param engine
+     * @throws Exception if the image could not be loaded
+     */
+    private void prepare(final Engine engine) throws Exception
+    {
+        final SplitRandom nextRandom = random.split();
+        
+        //the image is normally loaded already so this doesn't wait, the worker threads never have to wait on it
+        nextImage = engine.getResources().getGameImage(nextRandom);
+        
+        final Image image = nextImage;
+        final int dimension = (int)Math.sqrt(getNumPieces(engine));
+        final boolean humanPlayer = (engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.Human) == 0);
+        final List<Rectangle> windows = getWindows(engine.getMain().getScreen(), getNumPlayers(engine), humanPlayer);
+        final Cutter.PuzzleCut puzzleCut = Cutter.PuzzleCut.values()[engine.getGameMenu().getOptionSelectionIndex(GameMenu.LayerKey.Options, GameMenu.OptionKey.PuzzleCut)];
+        
+        final List<CutSheet> list = new ArrayList<>();
+        nextSheets = list;
+        
+        //the low priority threads so the puzzles are still updated on the pool during the countdown
+        next = Workers.getBackground().submit(new Callable<List<CutSheet>>()
+        {
+            @Override
+            public List<CutSheet> call() throws Exception
+            {
+                for (Rectangle window : windows)
+                {
+                    final Dimension size = CutSheet.getSize(image, window);
+                    
+                    if (findCutSheet(list, image, size, dimension, dimension, puzzleCut) != null)
+                        continue;
+                    
+                    //resizing the image happens here instead of when the round starts
+                    CutSheet sheet = new CutSheet(image, size, dimension, dimension, puzzleCut, cutMaskCache, scaledImageCache, fileCache, nextRandom.split());
+                    
+                    synchronized (list)
+                    {
+                        //the puzzles were replaced so nobody will use the next round
+                        if (disposed)
+                            break;
+                        
+                        sheet.startCutting(Workers.getBackground());
+                        list.add(sheet);
+                    }
+                }
+                
+                return list;
+            }
+        });
+    }
+    
+    /**
+     * Stop cutting the sheets of these puzzles and of the next round.
+     * This is called when the puzzles are replaced so the background 
+     * threads don't keep cutting sheets that will never be used.
+     */
+    public void dispose()
+    {
+        for (CutSheet sheet : sheets)
+        {
+            sheet.cancelCutting();
+        }
+        
+        for (CutSheet sheet : prepared)
+        {
+            sheet.cancelCutting();
+        }
+        
+        if (next == null)
+            return;
+        
+        //if the next round hasn't started it never will
+        next.cancel(false);
+        
+        //if the next round is still running it stops before the next sheet
+        synchronized (nextSheets)
+        {
+            disposed = true;
+            
+            for (CutSheet sheet : nextSheets)
+            {
+                sheet.cancelCutting();
+            }
+        }
+        
+        next = null;
+        nextSheets = null;
+        nextImage = null;
+    }
+    
+    /**
+     * Wait for the sheets of the next round
+     * @return List<CutSheet>
+     * @throws Exception if the image could not be resized
+     */
+    private List<CutSheet> getNextRound() throws Exception
+    {
+        try
+        {
+            return next.get();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof Exception)
+                throw (Exception)e.getCause();
+            
+            throw e;
+        }
+        finally
+        {
+            next = null;
+            nextSheets = null;
+            nextImage = null;
+        }
+    }
+    
+    /**
+     * Create the puzzles with the given settings, this does not need the engine
+     * so the puzzles can also be created without a window
+     * @param image The image the puzzles are made from
+     * @param screen The area the puzzles are placed within
+     * @param timeDeduction The nanoseconds that pass each update
+     * @param mouse The mouse the human player uses
+     * @param numPieces Number of pieces in each puzzle
+     * @param numPlayers Number of puzzles
+     * @param humanPlayer Is the first puzzle solved by a human
+     * @param difficultyIndex
+     * @param gameTypeIndex
+     * @param puzzleCutIndex 
+     */
+    public void reset(final Image image, final Rectangle screen, final long timeDeduction, final Mouse mouse, final int numPieces, final int numPlayers, final boolean humanPlayer, final int difficultyIndex, final int gameTypeIndex, final int puzzleCutIndex)
+    {
+        this.timer = new Timer(COUNTDOWN);
+        this.countdownTime = 0;
+        this.countdown = null;
+        
+        //the previous puzzles need to be cleared from the screen
+        this.redraw = true;
+        
+        this.mouse = mouse;
+        
+        //what are the dimensions of each puzzle
+        int puzzleRows = (int)Math.sqrt(numPieces);
+        int puzzleCols = (int)Math.sqrt(numPieces);
+        
+        //stop cutting the previous puzzles if they weren't finished
+        for (CutSheet sheet : sheets)
+        {
+            sheet.cancelCutting();
+        }
+        
+        sheets = new ArrayList<>();
         
         collection = new ArrayList<>();
         
+        final Cutter.PuzzleCut puzzleCut = Cutter.PuzzleCut.values()[puzzleCutIndex];
+        
+        for (Rectangle window : getWindows(screen, numPlayers, humanPlayer))
+        {
+            Puzzle puzzle = new Puzzle(getCutSheet(image, puzzleRows, puzzleCols, window, puzzleCut), window, timeDeduction, gameTypeIndex, difficultyIndex, random.split());
+            
+            //only the first puzzle can be the human player
+            if (!humanPlayer || !collection.isEmpty())
+                puzzle.setAutoSolve(true);
+            
+            collection.add(puzzle);
+        }
+        
+        //the sheets cut during the countdown that no puzzle needs because the settings changed
+        for (CutSheet sheet : prepared)
+        {
+            sheet.cancelCutting();
+        }
+        
+        prepared = new ArrayList<>();
+        
+        tasks = new ArrayList<>(collection.size());
+        
+        for (final Puzzle puzzle : collection)
+        {
+            if (puzzle == null)
+                continue;
+            
+            tasks.add(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    puzzle.update(mouse);
+                    return null;
+                }
+            });
+        }
+    }
+    
+    /**
+     * Get the window of each puzzle. If the first player is human they get the left side
+     * of the screen, the cpu windows are made square.
+     * @param screen The area the puzzles are placed within
+     * @param numPlayers Number of puzzles
+     * @param humanPlayer Is the first puzzle solved by a human
+     * @return List<Rectangle> The window of each puzzle in order
+     */
+    private static List<Rectangle> getWindows(final Rectangle screen, final int numPlayers, final boolean humanPlayer)
+    {
+        final List<Rectangle> result = new ArrayList<>(numPlayers);
+        
         double squareRoot = Math.sqrt(numPlayers);
         
         Rectangle windows[][] = null;
@@ -130,14 +432,14 @@ public class Puzzles
         //if 1 player use entire window
         if (numPlayers == 1)
         {
-            windows = WindowHelper.getWindows(engine.getMain().getScreen(), (int)squareRoot, (int)squareRoot);
+            windows = WindowHelper.getWindows(screen, (int)squareRoot, (int)squareRoot);
         }
         else
         {
             if (humanPlayer)
             {
                 //if 1st player is human they will get left half the window, the other cpu windows will all share the right half
-                Rectangle r = engine.getMain().getScreen();
+                Rectangle r = screen;
                 leftSide  = new Rectangle(r.x,                        r.y, (int)(r.width * .75), r.height);
                 rightSide = new Rectangle(r.x + (int)(r.width * .75), r.y, (int)(r.width * .25), r.height);
                 
@@ -155,34 +457,23 @@ public class Puzzles
                 //if 1st player isn't human everyone gets the same size screen
                 if ((int)squareRoot < squareRoot)
                 {
-                    windows = WindowHelper.getWindows(engine.getMain().getScreen(), (int)squareRoot, (int)squareRoot + 1);
+                    windows = WindowHelper.getWindows(screen, (int)squareRoot, (int)squareRoot + 1);
                 }
                 else
                 {
-                    windows = WindowHelper.getWindows(engine.getMain().getScreen(), (int)squareRoot, (int)squareRoot);
+                    windows = WindowHelper.getWindows(screen, (int)squareRoot, (int)squareRoot);
                 }
             }
         }
         
-        final Image image = engine.getResources().getGameImage();
-        
         if (humanPlayer)
-        {
-            if (leftSide != null)
-            {
-                collection.add(new Puzzle(image, puzzleRows, puzzleCols, leftSide, engine.getMain().getTimeDeductionPerFrame(), gameTypeIndex, difficultyIndex, puzzleCutIndex));
-            }
-            else
-            {
-                collection.add(new Puzzle(image, puzzleRows, puzzleCols, windows[0][0], engine.getMain().getTimeDeductionPerFrame(), gameTypeIndex, difficultyIndex, puzzleCutIndex));
-            }
-        }
+            result.add((leftSide != null) ? leftSide : windows[0][0]);
         
         for (int row=0; row < windows.length; row++)
         {
             for (int col=0; col < windows[0].length; col++)
             {
-                if (collection.size() >= numPlayers)
+                if (result.size() >= numPlayers)
                     continue;
                 
                 if (windows[row][col].width > windows[row][col].height)
@@ -190,26 +481,146 @@ public class Puzzles
                 else
                     windows[row][col].height = windows[row][col].width;
                 
-                Puzzle puzzle = new Puzzle(image, puzzleRows, puzzleCols, windows[row][col], engine.getMain().getTimeDeductionPerFrame(), gameTypeIndex, difficultyIndex, puzzleCutIndex);
-                puzzle.setAutoSolve(true);
-                collection.add(puzzle);
+                result.add(windows[row][col]);
             }
         }
+        
+        return result;
     }
     
-    public void update(Engine engine) throws Exception
+    /**
+     * Have the pieces of every puzzle been cut
+     * @return boolean
+     */
+    private boolean isEveryCuttingComplete()
     {
         for (Puzzle puzzle : collection)
         {
-            if (puzzle != null)
+            if (puzzle != null && !puzzle.isCuttingComplete())
+                return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Get the sheet of cut images for a puzzle. If another puzzle 
+     * has the same settings the existing sheet will be returned,
+     * the sheets cut during the countdown are used next.
+     * @param image The image the puzzle is made from
+     * @param rows Number of rows in the puzzle
+     * @param cols Number of cols in the puzzle
+     * @param window The window the puzzle is contained within
+     * @param puzzleCut The style of cut
+     * @return CutSheet
+     */
+    private CutSheet getCutSheet(final Image image, final int rows, final int cols, final Rectangle window, final Cutter.PuzzleCut puzzleCut)
+    {
+        final Dimension size = CutSheet.getSize(image, window);
+        
+        CutSheet sheet = findCutSheet(sheets, image, size, rows, cols, puzzleCut);
+        
+        if (sheet != null)
+            return sheet;
+        
+        sheet = findCutSheet(prepared, image, size, rows, cols, puzzleCut);
+        
+        if (sheet != null)
+        {
+            prepared.remove(sheet);
+        }
+        else
+        {
+            sheet = new CutSheet(image, size, rows, cols, puzzleCut, cutMaskCache, scaledImageCache, fileCache, random.split());
+        }
+        
+        sheets.add(sheet);
+        return sheet;
+    }
+    
+    /**
+     * Find the sheet with the same settings
+     * @return CutSheet The sheet, null if there isn't one
+     */
+    private static CutSheet findCutSheet(final List<CutSheet> list, final Image image, final Dimension size, final int rows, final int cols, final Cutter.PuzzleCut puzzleCut)
+    {
+        for (CutSheet sheet : list)
+        {
+            if (sheet.isMatch(image, size, rows, cols, puzzleCut))
+                return sheet;
+        }
+        
+        return null;
+    }
+    
+    public void update(Engine engine) throws Exception
+    {
+        update();
+        
+        //play the sound effects after every puzzle is updated so it is done in the same order every time
+        for (int i=0; i < collection.size(); i++)
+        {
+            final Puzzle puzzle = collection.get(i);
+            
+            if (puzzle != null && puzzle.hasPlaySound())
             {
-                puzzle.update(engine.getMouse());
-                
-                if (puzzle.hasPlaySound())
+                engine.getResources().playSound(ResourceManager.GameAudio.Connect, false);
+                puzzle.setPlaySound(false);
+            }
+        }
+        
+        if (isEveryPuzzleFinished())
+        {
+            if (PREPARE_NEXT_ROUND && next == null)
+                prepare(engine);
+            
+            if (timer.hasTimePassed())
+            {
+                reset(engine);
+                return;
+            }
+            
+            timer.update(engine.getMain().getTimeDeductionPerFrame());
+            countdownTime += engine.getMain().getTimeDeductionPerFrame();
+        }
+    }
+    
+    /**
+     * Update every puzzle once and set the place of the puzzles that have finished.
+     * This does not need the engine so the puzzles can also be updated without a window.
+     * @throws Exception 
+     */
+    public void update() throws Exception
+    {
+        //the puzzles don't share anything while they are being solved so they can be updated at the same time,
+        //while cutting the worker threads are busy cutting the pieces so we don't wait on them,
+        //with only 1 worker thread it is faster to update them here
+        if (PARALLEL_UPDATE && collection.size() > 1 && Workers.getPool().getParallelism() > 1 && isEveryCuttingComplete())
+        {
+            //wait until every puzzle has been updated
+            for (Future<Void> future : Workers.getPool().invokeAll(tasks))
+            {
+                try
                 {
-                    engine.getResources().playSound(ResourceManager.GameAudio.Connect, false);
-                    puzzle.setPlaySound(false);
+                    future.get();
                 }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof Exception)
+                        throw (Exception)e.getCause();
+                    
+                    throw e;
+                }
+            }
+        }
+        else
+        {
+            for (int i=0; i < collection.size(); i++)
+            {
+                final Puzzle puzzle = collection.get(i);
+                
+                if (puzzle != null)
+                    puzzle.update(mouse);
             }
         }
 
@@ -217,59 +628,180 @@ public class Puzzles
         int nextPlace = 1;
 
         //calculate what the next rank will be
-        for (Puzzle puzzle : collection)
+        for (int i=0; i < collection.size(); i++)
         {
+            final Puzzle puzzle = collection.get(i);
+            
             if (puzzle != null && puzzle.hasGameOver() && puzzle.hasPlace())
                 nextPlace++;
         }
         
         //if game is finished and no place set
-        for (Puzzle puzzle : collection)
+        for (int i=0; i < collection.size(); i++)
         {
+            final Puzzle puzzle = collection.get(i);
+            
             if (puzzle != null && puzzle.hasGameOver() && !puzzle.hasPlace())
             {
                 puzzle.setPlace(nextPlace);
                 nextPlace++;
             }
         }
+    }
+    
+    public List<Puzzle> getPuzzles()
+    {
+        return collection;
+    }
+    
+    /**
+     * Add the areas of the puzzles that have changed since the last time this was called
+     * @param region The areas of the screen that need to be drawn again
+     */
+    public void addDirtyRegion(final DirtyRegion region)
+    {
+        //the entire screen changes when the puzzles are reset and during the countdown to the next puzzle
+        if (collection == null || redraw || isEveryPuzzleFinished())
+            region.setFull();
         
-        if (isEveryPuzzleFinished())
+        redraw = false;
+        
+        if (collection != null)
         {
-            if (timer.hasTimePassed())
+            for (int i=0; i < collection.size(); i++)
             {
-                reset(engine);
-                return;
+                final Puzzle puzzle = collection.get(i);
+                
+                if (puzzle == null)
+                    continue;
+                
+                //the pieces move on their own while they are being cut and scrambled
+                if (!puzzle.isScramblingComplete())
+                    region.setFull();
+                
+                //always check so the changes don't build up
+                puzzle.addDirtyRegion(region);
             }
+        }
+    }
+    
+    /**
+     * Add the areas of the puzzles that change when the snapshots are drawn, 
+     * this is called by the thread drawing the puzzles
+     * @param region The areas of the screen that need to be drawn again
+     * @param snapshots Snapshot of every puzzle that will be drawn
+     */
+    public static void addDirtyRegion(final DirtyRegion region, final PuzzleSnapshot[] snapshots)
+    {
+        for (PuzzleSnapshot snapshot : snapshots)
+        {
+            if (snapshot != null)
+                snapshot.getPuzzle().addDirtyRegion(region, snapshot);
+        }
+    }
+    
+    /**
+     * Get a snapshot of the game that can be drawn on another thread,
+     * the last snapshot is returned again if nothing drawn has changed
+     * @param mouse Location of the mouse, null if the mouse isn't drawn
+     * @param mouseDragged Is the mouse being dragged
+     * @return Snapshot
+     */
+    public Snapshot getSnapshot(final Point mouse, final boolean mouseDragged)
+    {
+        final PuzzleSnapshot[] puzzles = getSnapshots();
+        final String desc = getCountdown();
+        
+        if (snapshot == null || !snapshot.isMatch(puzzles, desc, mouse, mouseDragged))
+            snapshot = new Snapshot(puzzles, desc, (mouse != null) ? new Point(mouse) : null, mouseDragged);
+        
+        return snapshot;
+    }
+    
+    /**
+     * Get a snapshot of every puzzle that can be drawn on another thread,
+     * the last array is returned again if no puzzle has changed
+     * @return PuzzleSnapshot[]
+     */
+    public PuzzleSnapshot[] getSnapshots()
+    {
+        final int count = (collection != null) ? collection.size() : 0;
+        
+        PuzzleSnapshot[] result = (snapshots != null && snapshots.length == count) ? snapshots : new PuzzleSnapshot[count];
+        
+        for (int i=0; i < count; i++)
+        {
+            final PuzzleSnapshot puzzle = (collection.get(i) != null) ? collection.get(i).getSnapshot() : null;
             
-            timer.update(engine.getMain().getTimeDeductionPerFrame());
+            if (result[i] != puzzle)
+            {
+                //the last array may have been published so it is never changed
+                if (result == snapshots)
+                    result = Arrays.copyOf(snapshots, count);
+                
+                result[i] = puzzle;
+            }
         }
+        
+        snapshots = result;
+        
+        return result;
+    }
+    
+    /**
+     * Get the countdown to the next puzzle, the last countdown 
+     * is returned again until the time displayed changes
+     * @return String The countdown, null if every puzzle isn't finished
+     */
+    public String getCountdown()
+    {
+        if (!isEveryPuzzleFinished())
+            return null;
+        
+        final long displayed = Math.max(0, COUNTDOWN - countdownTime) / Puzzle.TIMER_RESOLUTION;
+        
+        if (countdown == null || countdownDisplayed != displayed)
+        {
+            countdown = "Next Puzzle in " + timer.getDescRemaining(TimerCollection.FORMAT_5);
+            countdownDisplayed = displayed;
+        }
+        
+        return countdown;
     }
     
     public Graphics2D render(Graphics2D g2d, Engine engine)
     {
-        if (isEveryPuzzleFinished())
+        return render(g2d, engine.getMain().getScreen(), getSnapshots(), getCountdown());
+    }
+    
+    /**
+     * Draw the puzzles as they were when the snapshots were created
+     * @param g2d
+     * @param screen The entire window
+     * @param snapshots Snapshot of every puzzle
+     * @param countdown The countdown to the next puzzle, null if every puzzle isn't finished
+     * @return Graphics2D
+     */
+    public static Graphics2D render(Graphics2D g2d, final Rectangle screen, final PuzzleSnapshot[] snapshots, final String countdown)
+    {
+        if (countdown != null)
             g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.25f));
         
-        if (collection != null)
+        for (PuzzleSnapshot snapshot : snapshots)
         {
-            for (Puzzle puzzle : collection)
-            {
-                if (puzzle != null)
-                    puzzle.draw(g2d);
-            }
+            if (snapshot != null)
+                snapshot.getPuzzle().draw(g2d, snapshot);
         }
         
-        if (isEveryPuzzleFinished())
+        if (countdown != null)
         {
             g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 1f));
             g2d.setColor(Color.RED);
             g2d.setFont(g2d.getFont().deriveFont(Font.BOLD, 24));
-            final int middleX = engine.getMain().getScreen().x + (engine.getMain().getScreen().width  / 2);
-            final int middleY = engine.getMain().getScreen().y + (engine.getMain().getScreen().height / 2);
-            
-            final String desc = "Next Puzzle in " + timer.getDescRemaining(TimerCollection.FORMAT_5);
+            final int middleX = screen.x + (screen.width  / 2);
+            final int middleY = screen.y + (screen.height / 2);
             
-            g2d.drawString(desc, middleX - (g2d.getFontMetrics().stringWidth(desc) / 2), middleY - (g2d.getFontMetrics().getHeight() / 2));
+            g2d.drawString(countdown, middleX - (g2d.getFontMetrics().stringWidth(countdown) / 2), middleY - (g2d.getFontMetrics().getHeight() / 2));
         }
         
         return g2d;
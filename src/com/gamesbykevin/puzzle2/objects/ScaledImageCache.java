@@ -0,0 +1,139 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.WeakHashMap;
+
+/**
+ * The puzzle image resized for each board size. Boards with the same size
+ * share one image so the image is only resized once. The images are only
+ * read from once they are created. Once the original image is no longer
+ * used anywhere else the resized images will be removed.
+ * @author GOD
+ */
+public final class ScaledImageCache
+{
+    //the most sizes we will keep for each image, the oldest size is removed first
+    private static final int MAX_SIZES = 4;
+    
+    //the resized images for each original image
+    private final WeakHashMap<Image, List<BufferedImage>> images = new WeakHashMap<>();
+    
+    //how many times an image was found or had to be created
+    private long hits = 0, misses = 0;
+    
+    /**
+     * Get the image resized to the given size, creating it if it does not exist
+     * @param source The original image
+     * @param width
+     * @param height
+     * @return BufferedImage ARGB image so the pixels can be accessed directly
+     */
+    public synchronized BufferedImage get(final Image source, final int width, final int height)
+    {
+        List<BufferedImage> sizes = images.get(source);
+        
+        if (sizes == null)
+        {
+            sizes = new ArrayList<>(MAX_SIZES);
+            images.put(source, sizes);
+        }
+        
+        for (BufferedImage image : sizes)
+        {
+            if (image.getWidth() == width && image.getHeight() == height)
+            {
+                hits++;
+                return image;
+            }
+        }
+        
+        misses++;
+        
+        if (sizes.size() == MAX_SIZES)
+            sizes.remove(0);
+        
+        final BufferedImage image = scale(source, width, height);
+        sizes.add(image);
+        return image;
+    }
+    
+    /**
+     * Resize the image. When the image is made smaller it is cut in half until the
+     * next half would be too small, so every pixel is part of the result instead
+     * of the pixels being skipped when the image is resized in one step.
+     * The first half is drawn straight from the original image
+     * so a copy of the full size image is never created.
+     * @param source The original image
+     * @param width
+     * @param height
+     * @return BufferedImage
+     */
+    public static BufferedImage scale(final Image source, final int width, final int height)
+    {
+        Image current = source;
+        
+        int currentWidth  = source.getWidth(null);
+        int currentHeight = source.getHeight(null);
+        
+        while (currentWidth / 2 >= width && currentHeight / 2 >= height)
+        {
+            currentWidth  /= 2;
+            currentHeight /= 2;
+            
+            current = draw(current, currentWidth, currentHeight);
+        }
+        
+        return draw(current, width, height);
+    }
+    
+    /**
+     * Draw the image into a new ARGB image of the given size
+     */
+    private static BufferedImage draw(final Image image, final int width, final int height)
+    {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        
+        Graphics2D g2d = result.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(image, 0, 0, width, height, null);
+        g2d.dispose();
+        
+        return result;
+    }
+    
+    /**
+     * How many times an existing image was returned
+     * @return long
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+    
+    /**
+     * How many times an image had to be resized
+     * @return long
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+    
+    /**
+     * Remove all images and reset the counters
+     */
+    public synchronized void clear()
+    {
+        images.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.gamesbykevin.puzzle2.shared;
+
+import java.awt.Rectangle;
+
+/**
+ * The areas of the screen that have changed since the last frame
+ * and need to be drawn again. Overlapping areas are combined and if
+ * there are too many areas they are combined into one.
+ * @author GOD
+ */
+public final class DirtyRegion
+{
+    //the most areas we will keep track of
+    private static final int MAX_RECTANGLES = 16;
+    
+    //the areas that have changed, re-used every frame
+    private final Rectangle[] rectangles = new Rectangle[MAX_RECTANGLES];
+    
+    //number of areas that have changed
+    private int count = 0;
+    
+    //does the entire screen need to be drawn
+    private boolean full = true;
+    
+    public DirtyRegion()
+    {
+        for (int i=0; i < rectangles.length; i++)
+        {
+            rectangles[i] = new Rectangle();
+        }
+    }
+    
+    /**
+     * Add an area that has changed
+     * @param x
+     * @param y
+     * @param width
+     * @param height
+     */
+    public void add(final int x, final int y, final int width, final int height)
+    {
+        if (full || width <= 0 || height <= 0)
+            return;
+        
+        //combine with an area that it overlaps
+        for (int i=0; i < count; i++)
+        {
+            if (intersects(rectangles[i], x, y, width, height))
+            {
+                rectangles[i].add(x, y);
+                rectangles[i].add(x + width, y + height);
+                return;
+            }
+        }
+        
+        //if there are too many areas add to the last area
+        if (count == MAX_RECTANGLES)
+        {
+            rectangles[count - 1].add(x, y);
+            rectangles[count - 1].add(x + width, y + height);
+            return;
+        }
+        
+        rectangles[count].setBounds(x, y, width, height);
+        count++;
+    }
+    
+    public void add(final Rectangle rectangle)
+    {
+        add(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+    }
+    
+    /**
+     * Add every area that has changed in the other region
+     * @param region
+     */
+    public void add(final DirtyRegion region)
+    {
+        if (region.full)
+        {
+            setFull();
+            return;
+        }
+        
+        for (int i=0; i < region.count; i++)
+        {
+            add(region.rectangles[i]);
+        }
+    }
+    
+    /**
+     * Do the rectangles overlap or touch each other
+     */
+    private static boolean intersects(final Rectangle r, final int x, final int y, final int width, final int height)
+    {
+        return (x <= r.x + r.width && y <= r.y + r.height && r.x <= x + width && r.y <= y + height);
+    }
+    
+    /**
+     * Mark the entire screen as changed
+     */
+    public void setFull()
+    {
+        this.full = true;
+    }
+    
+    public boolean isFull()
+    {
+        return full;
+    }
+    
+    public boolean isEmpty()
+    {
+        return (!full && count == 0);
+    }
+    
+    public int getCount()
+    {
+        return count;
+    }
+    
+    public Rectangle get(final int index)
+    {
+        return rectangles[index];
+    }
+    
+    /**
+     * Nothing has changed, this is called after the changes have been drawn
+     */
+    public void clear()
+    {
+        this.full = false;
+        this.count = 0;
+    }
+}
\ No newline at end of file
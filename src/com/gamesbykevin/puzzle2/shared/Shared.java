@@ -19,6 +19,9 @@ public class Shared
     //how many updates per second, controls speed of game
     public static final int DEFAULT_UPS = 60;
     
+    //the most frames drawn per second, 0 for no limit
+    public static final int DEFAULT_FPS = 60;
+    
     //what is the name of our game
     public static final String GAME_NAME = "Jigsaw Puzzle";
     
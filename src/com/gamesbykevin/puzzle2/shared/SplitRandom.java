@@ -0,0 +1,94 @@
+package com.gamesbykevin.puzzle2.shared;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Random numbers that are the same every time for the same seed. Each
+ * puzzle, cut sheet and cpu gets its own instance split from the one
+ * before it so nothing is shared between the threads updating them.
+ * This is the SplitMix64 generator, the same one SplittableRandom uses.
+ * @author GOD
+ */
+public final class SplitRandom
+{
+    //added to the seed every time a number is created
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    
+    //the seeds for instances created without a seed
+    private static final AtomicLong SEEDS = new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+    
+    private long seed;
+    
+    /**
+     * Create with a different seed every time
+     */
+    public SplitRandom()
+    {
+        this(mix64(SEEDS.getAndAdd(GOLDEN_GAMMA * 2)));
+    }
+    
+    public SplitRandom(final long seed)
+    {
+        this.seed = seed;
+    }
+    
+    private static long mix64(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    public long nextLong()
+    {
+        seed += GOLDEN_GAMMA;
+        return mix64(seed);
+    }
+    
+    /**
+     * Get a random number from 0 up to but not including the bound
+     * @param bound Must be positive
+     * @return int
+     */
+    public int nextInt(final int bound)
+    {
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+        
+        int r = (int)(nextLong() >>> 33);
+        
+        //if the bound is a power of 2 use the high bits
+        if ((bound & (bound - 1)) == 0)
+            return (int)((bound * (long)r) >>> 31);
+        
+        //try again if the number is in the last partial range so every number is equally likely
+        for (int u = r; u - (r = u % bound) + (bound - 1) < 0; u = (int)(nextLong() >>> 33));
+        
+        return r;
+    }
+    
+    /**
+     * Get a random number from 0 up to but not including 1
+     * @return double
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+    
+    public boolean nextBoolean()
+    {
+        return (nextLong() < 0);
+    }
+    
+    /**
+     * Create a new instance seeded from this one, the numbers
+     * from each will be different but will be the same every
+     * time for the same seed
+     * @return SplitRandom
+     */
+    public SplitRandom split()
+    {
+        return new SplitRandom(mix64(nextLong()) ^ GOLDEN_GAMMA);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.gamesbykevin.puzzle2.shared;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background threads shared by the whole game for work 
+ * that does not need to happen on the main game thread
+ * @author GOD
+ */
+public final class Workers 
+{
+    //work stealing pool with a thread for each processor
+    private static ForkJoinPool pool;
+    
+    //low priority threads for work done ahead of time, so it never waits in front of the work the game needs now
+    private static ExecutorService background;
+    
+    private Workers()
+    {
+        
+    }
+    
+    /**
+     * Get the pool, it is created the first time it is needed
+     * @return ForkJoinPool
+     */
+    public static synchronized ForkJoinPool getPool()
+    {
+        if (pool == null)
+            pool = new ForkJoinPool();
+        
+        return pool;
+    }
+    
+    /**
+     * Get the low priority threads for work that is done ahead of time, like loading the
+     * next image and cutting the next puzzles. This leaves the pool free for updating the puzzles.
+     * They are created the first time they are needed.
+     * @return ExecutorService
+     */
+    public static synchronized ExecutorService getBackground()
+    {
+        if (background == null)
+        {
+            final AtomicInteger count = new AtomicInteger();
+            
+            background = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(final Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "Background Worker " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        }
+        
+        return background;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,107 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.framework.input.Mouse;
+
+import com.gamesbykevin.puzzle2.shared.SplitRandom;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the puzzle pieces saved by one game are found by the next game,
+ * the games aren't seeded the same as when the game is launched again
+ * @author GOD
+ */
+public class CutSheetFileCacheTest
+{
+    //the number of pieces in each puzzle
+    private static final int PIECES = 36;
+    
+    //the most time to wait for the pieces to be cut or saved in milliseconds
+    private static final long TIMEOUT = 30000L;
+    
+    //the folder the pieces are saved in
+    private File directory;
+    
+    private CutSheetFileCache cache;
+    
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("cutsheets").toFile();
+        cache = new CutSheetFileCache(directory, CutSheetFileCache.DEFAULT_MAX_BYTES);
+    }
+    
+    @After
+    public void tearDown()
+    {
+        cache.clear();
+        directory.delete();
+    }
+    
+    @Test
+    public void testFoundByNextGame() throws Exception
+    {
+        final CutSheet cut = play();
+        
+        //the pieces are saved in the background once they are all cut
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        
+        while (cache.getBytes() == 0 && cache.getFailures() == 0 && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(10);
+        }
+        
+        assertEquals("The pieces should have been saved", 0, cache.getFailures());
+        assertTrue("The pieces should have been saved", cache.getBytes() > 0);
+        assertEquals("The first game should cut the pieces", 0, cache.getHits());
+        
+        final CutSheet read = play();
+        
+        assertEquals("The next game should find the saved pieces", 1, cache.getHits());
+        
+        final int[] expected = new int[cut.getPieceWidth() * cut.getPieceHeight()];
+        final int[] actual = new int[expected.length];
+        
+        for (int index=0; index < PIECES; index++)
+        {
+            cut.getPiecePixels(index, expected);
+            read.getPiecePixels(index, actual);
+            
+            assertArrayEquals("The saved piece " + index + " should be the same as the piece cut", expected, actual);
+        }
+    }
+    
+    /**
+     * Create the puzzles the same as the game without a seed and update them until every piece is cut
+     * @return CutSheet The pieces of the puzzle
+     */
+    private CutSheet play() throws Exception
+    {
+        final Puzzles puzzles = new Puzzles(new SplitRandom(), cache);
+        puzzles.reset(CutterBenchmark.createImage(450, 450), PuzzleFixture.SCREEN, PuzzleFixture.TIME_DEDUCTION, new Mouse(), PIECES, 1, false, 0, 0, Cutter.PuzzleCut.Traditional.ordinal());
+        
+        final Puzzle puzzle = puzzles.getPuzzles().get(0);
+        
+        final long end = System.currentTimeMillis() + TIMEOUT;
+        
+        while (!puzzle.isCuttingComplete() && System.currentTimeMillis() < end)
+        {
+            puzzles.update();
+        }
+        
+        assertTrue("Every piece should have been cut", puzzle.isCuttingComplete());
+        
+        puzzles.dispose();
+        
+        return puzzle.getCutSheet();
+    }
+}
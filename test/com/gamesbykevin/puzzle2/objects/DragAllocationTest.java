@@ -0,0 +1,241 @@
+package com.gamesbykevin.puzzle2.objects;
+
+import com.gamesbykevin.framework.input.Mouse;
+
+import com.gamesbykevin.puzzle2.main.Snapshot;
+
+import java.awt.Container;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the memory allocated by Puzzle.update() while a piece
+ * is being dragged and dropped, and by updating the game and creating 
+ * the snapshot to draw while nothing moves, stays within the tolerance
+ * @author GOD
+ */
+public class DragAllocationTest
+{
+    //number of frames to run before we start measuring
+    private static final int WARMUP = 20000;
+    
+    //number of frames to measure
+    private static final int FRAMES = 10000;
+    
+    //average number of bytes allowed to be allocated each frame, the smallest object is 16 bytes 
+    //so anything created every frame goes over, while the one time growth of the lists that are 
+    //re-used and anything the measuring itself allocates are spread over every frame and stay under
+    private static final double TOLERANCE = 16;
+    
+    //the number of pieces in the puzzle
+    private static final int PIECES = 225;
+    
+    //the time that passes each update of the game, 60 updates a second so the game timer runs as it does in the game
+    private static final long TIME_DEDUCTION = 1000000000L / 60;
+    
+    private final Rectangle screen = PuzzleFixture.SCREEN;
+    
+    private final Mouse mouse = new Mouse();
+    
+    //source of the mouse events
+    private final Container component = new Container();
+    
+    //counts the bytes each thread allocates, only some virtual machines can
+    private com.sun.management.ThreadMXBean threads;
+    
+    @Before
+    public void setUp()
+    {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        
+        assumeTrue("The bytes allocated by a thread can't be measured", bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported());
+        
+        threads = (com.sun.management.ThreadMXBean)bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+    
+    /**
+     * Drag the same piece around in a circle
+     */
+    @Test
+    public void testDrag() throws Exception
+    {
+        //the locations the piece will be dragged to
+        final Point[] locations = new Point[64];
+        
+        for (int i=0; i < locations.length; i++)
+        {
+            final double angle = (Math.PI * 2 * i) / locations.length;
+            locations[i] = new Point(screen.x + (screen.width / 2) + (int)(Math.cos(angle) * 200), screen.y + (screen.height / 2) + (int)(Math.sin(angle) * 200));
+        }
+        
+        final Puzzle puzzle = PuzzleFixture.createPuzzle(PuzzleFixture.createSheet(PIECES));
+        
+        final Piece piece = puzzle.getPieces().get(0);
+        mouse.setMouseClicked(new MouseEvent(component, MouseEvent.MOUSE_CLICKED, 0, 0, piece.getX() + (piece.getWidth() / 2), piece.getY() + (piece.getHeight() / 2), 1, false));
+        puzzle.update(mouse);
+        
+        assertTrue("A piece should be selected", puzzle.hasSelectedPiece());
+        
+        for (int i=0; i < WARMUP; i++)
+        {
+            mouse.setMouseDragged(locations[i % locations.length]);
+            puzzle.update(mouse);
+        }
+        
+        long bytes = 0;
+        
+        for (int i=0; i < FRAMES; i++)
+        {
+            mouse.setMouseDragged(locations[i % locations.length]);
+            bytes += update(puzzle);
+        }
+        
+        final double drag = (double)bytes / FRAMES;
+        
+        assertTrue("Dragging allocated " + drag + " bytes per frame", drag < TOLERANCE);
+    }
+    
+    /**
+     * Pick up each piece, drag it to where it belongs and drop it
+     */
+    @Test
+    public void testPickAndDrop() throws Exception
+    {
+        final Puzzle puzzle = PuzzleFixture.createPuzzle(PuzzleFixture.createSheet(PIECES));
+        
+        long bytes = 0;
+        
+        int frames = 0;
+        
+        for (int id=0; id < puzzle.getRows() * puzzle.getCols(); id++)
+        {
+            final Piece leader = puzzle.getPieces().get(id % puzzle.getPieces().size());
+            
+            final int x = leader.getX() + (leader.getWidth()  / 2);
+            final int y = leader.getY() + (leader.getHeight() / 2);
+            
+            final MouseEvent click = new MouseEvent(component, MouseEvent.MOUSE_CLICKED, 0, 0, x, y, 1, false);
+            
+            mouse.resetMouseEvents();
+            mouse.setMouseClicked(click);
+            bytes += update(puzzle);
+            
+            if (!puzzle.hasSelectedPiece())
+                continue;
+            
+            //the piece under the mouse is the piece that will follow the mouse
+            Piece selected = puzzle.getPiece();
+            
+            for (Piece member = selected.getNext(); member != selected; member = member.getNext())
+            {
+                if (member.contains(x, y))
+                {
+                    selected = member;
+                    break;
+                }
+            }
+            
+            final Point destination = new Point(puzzle.getDestinationX(selected) + (selected.getWidth() / 2), puzzle.getDestinationY(selected) + (selected.getHeight() / 2));
+            
+            mouse.setMouseDragged(destination);
+            bytes += update(puzzle);
+            
+            final MouseEvent release = new MouseEvent(component, MouseEvent.MOUSE_RELEASED, 0, 0, destination.x, destination.y, 1, false);
+            
+            mouse.setMouseReleased(release);
+            bytes += update(puzzle);
+            
+            frames += 3;
+        }
+        
+        final double drop = (double)bytes / frames;
+        
+        assertTrue("Picking up and dropping allocated " + drop + " bytes per frame", drop < TOLERANCE);
+        assertTrue("The pieces should have connected", puzzle.getPieces().size() < puzzle.getRows() * puzzle.getCols());
+    }
+    
+    /**
+     * Update the puzzles and create the snapshot to draw each frame the same as the game does,
+     * the mouse is held still so only the game timer displayed changes
+     */
+    @Test
+    public void testSnapshot() throws Exception
+    {
+        final Puzzles puzzles = new Puzzles(PuzzleFixture.SEED);
+        puzzles.reset(CutterBenchmark.createImage(450, 450), screen, TIME_DEDUCTION, mouse, PIECES, 1, true, 0, 0, Cutter.PuzzleCut.Traditional.ordinal());
+        
+        final Puzzle puzzle = puzzles.getPuzzles().get(0);
+        
+        assertTrue("The puzzle should be solved by the human", !puzzle.hasAutoSolve());
+        
+        while (!puzzle.isScramblingComplete())
+        {
+            puzzles.update();
+        }
+        
+        mouse.setMouseMoved(new Point(screen.x + (screen.width / 2), screen.y + (screen.height / 2)));
+        
+        for (int i=0; i < WARMUP; i++)
+        {
+            puzzles.update();
+            puzzles.getSnapshot(mouse.getLocation(), mouse.isMouseDragged());
+        }
+        
+        final long id = Thread.currentThread().getId();
+        
+        long bytes = 0;
+        
+        //number of snapshots created
+        int created = 0;
+        
+        Snapshot previous = puzzles.getSnapshot(mouse.getLocation(), mouse.isMouseDragged());
+        
+        for (int i=0; i < FRAMES; i++)
+        {
+            final long start = threads.getThreadAllocatedBytes(id);
+            
+            puzzles.update();
+            final Snapshot snapshot = puzzles.getSnapshot(mouse.getLocation(), mouse.isMouseDragged());
+            
+            bytes += threads.getThreadAllocatedBytes(id) - start;
+            
+            if (snapshot != previous)
+                created++;
+            
+            previous = snapshot;
+        }
+        
+        //the time displayed changes once a second
+        final long seconds = (FRAMES * TIME_DEDUCTION) / Puzzle.TIMER_RESOLUTION;
+        
+        assertTrue("A snapshot was created " + created + " times in " + seconds + " seconds", created <= seconds + 1);
+        
+        final double snapshot = (double)bytes / FRAMES;
+        
+        assertTrue("Updating and creating the snapshot allocated " + snapshot + " bytes per frame", snapshot < TOLERANCE);
+    }
+    
+    /**
+     * Update the puzzle and return the number of bytes allocated
+     */
+    private long update(final Puzzle puzzle) throws Exception
+    {
+        final long id = Thread.currentThread().getId();
+        
+        final long start = threads.getThreadAllocatedBytes(id);
+        
+        puzzle.update(mouse);
+        
+        return threads.getThreadAllocatedBytes(id) - start;
+    }
+}